@@ -0,0 +1,99 @@
+package benchmark;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Loads the images that the benchmarks run on.
+ *
+ * <p>
+ * If the {@code benchmark.images} system property names a directory, the first
+ * JPEG or PNG image in it is used. Otherwise a synthetic scene with fuel cells
+ * and loading station tape is drawn. Either way the image is scaled to the
+ * requested resolution.
+ */
+public final class BenchmarkImages {
+    public static final String IMAGES_PROPERTY = "benchmark.images";
+
+    static {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    }
+
+    private BenchmarkImages() {
+    }
+
+    /**
+     * Returns a BGR image at the specified resolution.
+     *
+     * @param resolution The resolution, as width x height, e.g. "640x480".
+     * @return The image.
+     */
+    public static Mat load(String resolution) {
+        String[] dimensions = resolution.split("x");
+        Size size = new Size(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]));
+
+        Mat source = loadStoredImage();
+        if (source == null) {
+            source = drawScene();
+        }
+        Mat image = new Mat();
+        Imgproc.resize(source, image, size, 0, 0, Imgproc.INTER_AREA);
+        source.release();
+        return image;
+    }
+
+    /**
+     * Loads the first image in the directory named by the images property.
+     */
+    private static Mat loadStoredImage() {
+        String directory = System.getProperty(IMAGES_PROPERTY);
+        if (directory == null) {
+            return null;
+        }
+        File[] files = new File(directory).listFiles(
+                (dir, name) -> name.toLowerCase().matches(".*\\.(jpe?g|png)"));
+        if (files == null || files.length == 0) {
+            return null;
+        }
+        Arrays.sort(files);
+        Mat image = Imgcodecs.imread(files[0].getPath());
+        return image.empty() ? null : image;
+    }
+
+    /**
+     * Draws a 640x480 scene with several fuel cells and a loading station target
+     * over a noisy background.
+     */
+    private static Mat drawScene() {
+        Mat image = new Mat(480, 640, CvType.CV_8UC3, new Scalar(60, 60, 60));
+        Core.setRNGSeed(2020);
+        Mat noise = new Mat(image.size(), CvType.CV_8UC3);
+        Core.randn(noise, 0, 20);
+        Core.add(image, noise, image);
+        noise.release();
+
+        Scalar yellow = new Scalar(0, 220, 240);
+        int[][] fuelCells = { { 120, 380, 60 }, { 300, 360, 45 }, { 450, 330, 30 }, { 530, 300, 22 },
+                { 220, 290, 18 }, { 380, 280, 14 } };
+        for (int[] fuelCell : fuelCells) {
+            Imgproc.circle(image, new Point(fuelCell[0], fuelCell[1]), fuelCell[2], yellow, -1);
+        }
+
+        Scalar green = new Scalar(80, 255, 80);
+        MatOfPoint tape = new MatOfPoint(new Point(280, 80), new Point(370, 85), new Point(368, 205),
+                new Point(282, 200));
+        Imgproc.fillConvexPoly(image, tape, green);
+        Imgproc.rectangle(image, new Point(300, 110), new Point(350, 175), new Scalar(20, 20, 20), -1);
+        return image;
+    }
+}
@@ -0,0 +1,96 @@
+package pipeline;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfKeyPoint;
+import org.opencv.core.MatOfPoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import benchmark.BenchmarkImages;
+
+/**
+ * Benchmarks the pipelines and each of their stages.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+    @Param({ "320x240", "640x480", "1280x720" })
+    public String resolution;
+
+    private Mat image;
+    private FuelCellTrackingPipeLine fuelCellPipeline;
+    private LoadingStationPipeline loadingStationPipeline;
+
+    @Setup
+    public void setup() {
+        image = BenchmarkImages.load(resolution);
+        fuelCellPipeline = new FuelCellTrackingPipeLine();
+        fuelCellPipeline.process(image);
+        loadingStationPipeline = new LoadingStationPipeline();
+        loadingStationPipeline.process(image);
+    }
+
+    @TearDown
+    public void tearDown() {
+        image.release();
+    }
+
+    @Benchmark
+    public MatOfKeyPoint fuelCellProcess() {
+        fuelCellPipeline.process(image);
+        return fuelCellPipeline.findBlobsOutput();
+    }
+
+    @Benchmark
+    public List<MatOfPoint> loadingStationProcess() {
+        loadingStationPipeline.process(image);
+        return loadingStationPipeline.findContoursOutput();
+    }
+
+    @Benchmark
+    public Mat hsvThreshold() {
+        fuelCellPipeline.runStage("hsvThreshold");
+        return fuelCellPipeline.hsvThresholdOutput();
+    }
+
+    @Benchmark
+    public Mat cvErode() {
+        fuelCellPipeline.runStage("cvErode");
+        return fuelCellPipeline.cvErodeOutput();
+    }
+
+    @Benchmark
+    public MatOfKeyPoint findBlobs() {
+        fuelCellPipeline.runStage("findBlobs");
+        return fuelCellPipeline.findBlobsOutput();
+    }
+
+    @Benchmark
+    public List<MatOfPoint> findContours() {
+        loadingStationPipeline.runStage("findContours");
+        return loadingStationPipeline.findContoursOutput();
+    }
+
+    @Benchmark
+    public List<MatOfPoint> filterContours() {
+        loadingStationPipeline.runStage("filterContours");
+        return loadingStationPipeline.filterContoursOutput();
+    }
+}
@@ -0,0 +1,54 @@
+package runner;
+
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Mat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import benchmark.BenchmarkImages;
+import edu.wpi.cscore.CvSource;
+import edu.wpi.cscore.VideoMode;
+
+/**
+ * Benchmarks the fuel cell post processing: collecting the blobs found by the
+ * pipeline, selecting the closest, annotating and publishing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FuelCellTrackingRunnerBenchmark {
+    @Param({ "320x240", "640x480", "1280x720" })
+    public String resolution;
+
+    private Mat image;
+    private FuelCellTrackingRunner runner;
+    private ImageRegion region = new ImageRegion();
+
+    @Setup
+    public void setup() {
+        image = BenchmarkImages.load(resolution);
+        CvSource videoSource = new CvSource("benchmark", VideoMode.PixelFormat.kBGR, image.cols(), image.rows(), 30);
+        CvSource processedVideo = new CvSource("benchmark processed", VideoMode.PixelFormat.kBGR, 320, 240, 30);
+        runner = new FuelCellTrackingRunner(videoSource, processedVideo);
+        runner.getPipeline().process(image);
+    }
+
+    @Benchmark
+    public void process() {
+        runner.collect(runner.getPipeline(), region);
+        runner.process(image);
+    }
+}
@@ -0,0 +1,68 @@
+package target;
+
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import benchmark.BenchmarkImages;
+import pipeline.LoadingStationPipeline;
+
+/**
+ * Benchmarks building a loading station target from the biggest contour found
+ * in the benchmark image.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadingStationTargetBenchmark {
+    @Param({ "320x240", "640x480", "1280x720" })
+    public String resolution;
+
+    private MatOfPoint contour;
+    private int[] points;
+    private LoadingStationTarget target = new LoadingStationTarget();
+
+    @Setup
+    public void setup() {
+        Mat image = BenchmarkImages.load(resolution);
+        LoadingStationPipeline pipeline = new LoadingStationPipeline();
+        pipeline.process(image);
+        double areaMax = -1;
+        for (MatOfPoint mat : pipeline.findContoursOutput()) {
+            double area = Imgproc.contourArea(mat);
+            if (area > areaMax) {
+                areaMax = area;
+                contour = mat;
+            }
+        }
+        points = new int[2 * (int) contour.total()];
+        contour.get(0, 0, points);
+    }
+
+    @Benchmark
+    public LoadingStationTarget construct() {
+        return new LoadingStationTarget(contour);
+    }
+
+    @Benchmark
+    public LoadingStationTarget reuse() {
+        contour.get(0, 0, points);
+        return target.set(points, points.length / 2, 0, 0);
+    }
+}
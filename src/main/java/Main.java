@@ -10,6 +10,8 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -23,22 +25,36 @@ import com.google.gson.JsonParser;
 import edu.wpi.cscore.CvSource;
 import edu.wpi.cscore.MjpegServer;
 import edu.wpi.cscore.UsbCamera;
+import edu.wpi.cscore.VideoMode;
+import edu.wpi.cscore.VideoSink;
 import edu.wpi.cscore.VideoSource;
 import edu.wpi.first.cameraserver.CameraServer;
 import edu.wpi.first.networktables.EntryListenerFlags;
 import edu.wpi.first.networktables.NetworkTableInstance;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import runner.FrameRateGovernor;
+import runner.FrameRecorder;
 import runner.FuelCellTrackingRunner;
 import runner.LoadingStationRunner;
+import runner.ReplayRunner;
+import runner.RunnerController;
+import runner.ServerClock;
+import runner.StagedRunner;
 /*
    JSON format:
    {
        "team": <team number>,
        "ntmode": <"client" or "server", "client" if unspecified>
+       "pipeline mode": <"serial", "staged" or "multi", "serial" if unspecified>
+       "pipeline slots": <frames in flight in staged mode, 3 if unspecified>
+       "recorder file": <ring file for raw camera frames, not recorded if unspecified>
+       "recorder slots": <frames held by the ring file, 300 if unspecified>
+       "thermal file": <CPU temperature file, "/sys/class/thermal/thermal_zone0/temp" if unspecified>
+       "load file": <load average file, "/proc/loadavg" if unspecified>
        "cameras": [
            {
                "name": <camera name>
                "path": <path, e.g. "/dev/video0">
+               "runners": [<runner names, e.g. "FuelCellTrackingRunner">]  // optional
                "pixel format": <"MJPEG", "YUYV", etc>   // optional
                "width": <video mode width>              // optional
                "height": <video mode height>            // optional
@@ -83,6 +99,7 @@ public final class Main {
     public String path;
     public JsonObject config;
     public JsonElement streamConfig;
+    public List<String> runners = new ArrayList<>();
   }
 
   @SuppressWarnings("MemberName")
@@ -93,6 +110,14 @@ public final class Main {
 
   public static int team;
   public static boolean server;
+  public static String pipelineMode = "serial";
+  public static int pipelineSlots = 3;
+  public static String recorderFile;
+  public static int recorderSlots = 300;
+  public static String thermalFile = "/sys/class/thermal/thermal_zone0/temp";
+  public static String loadFile = "/proc/loadavg";
+  public static FrameRateGovernor governor;
+  public static ServerClock serverClock;
   public static List<CameraConfig> cameraConfigs = new ArrayList<>();
   public static List<SwitchedCameraConfig> switchedCameraConfigs = new ArrayList<>();
   public static List<VideoSource> cameras = new ArrayList<>();
@@ -132,6 +157,13 @@ public final class Main {
     // stream properties
     cam.streamConfig = config.get("stream");
 
+    // runners (optional)
+    if (config.has("runners")) {
+      for (JsonElement runner : config.get("runners").getAsJsonArray()) {
+        cam.runners.add(runner.getAsString());
+      }
+    }
+
     cam.config = config;
 
     cameraConfigs.add(cam);
@@ -205,6 +237,41 @@ public final class Main {
       }
     }
 
+    // pipeline mode (optional)
+    if (obj.has("pipeline mode")) {
+      String str = obj.get("pipeline mode").getAsString();
+      if ("serial".equalsIgnoreCase(str) || "staged".equalsIgnoreCase(str) || "multi".equalsIgnoreCase(str)) {
+        pipelineMode = str.toLowerCase();
+      } else {
+        parseError("could not understand pipeline mode value '" + str + "'");
+      }
+    }
+
+    // pipeline slots (optional)
+    if (obj.has("pipeline slots")) {
+      pipelineSlots = Math.max(1, obj.get("pipeline slots").getAsInt());
+    }
+
+    // recorder file (optional)
+    if (obj.has("recorder file")) {
+      recorderFile = obj.get("recorder file").getAsString();
+    }
+
+    // recorder slots (optional)
+    if (obj.has("recorder slots")) {
+      recorderSlots = Math.max(1, obj.get("recorder slots").getAsInt());
+    }
+
+    // thermal file (optional)
+    if (obj.has("thermal file")) {
+      thermalFile = obj.get("thermal file").getAsString();
+    }
+
+    // load file (optional)
+    if (obj.has("load file")) {
+      loadFile = obj.get("load file").getAsString();
+    }
+
     // cameras
     JsonElement camerasElement = obj.get("cameras");
     if (camerasElement == null) {
@@ -282,6 +349,11 @@ public final class Main {
    * Main.
    */
   public static void main(String... args) {
+    if (args.length > 0 && "--replay".equals(args[0])) {
+      replay(Arrays.copyOfRange(args, 1, args.length));
+      return;
+    }
+
     System.out.println("Starting NRG vision");
     if (args.length > 0) {
       configFile = args[0];
@@ -312,40 +384,30 @@ public final class Main {
       startSwitchedCamera(config);
     }
 
-    // start image processing on camera 0 if present
-    if (cameras.size() >= 1) {
-      CvSource processedVideo = CameraServer.getInstance().putVideo("Processed", 320, 240);
-
-      Map<String, TargetTrackingRunner<?>> runners = Map.of(
-        FuelCellTrackingRunner.class.getSimpleName(), new FuelCellTrackingRunner(cameras.get(0), processedVideo),
-        LoadingStationRunner.class.getSimpleName(), new LoadingStationRunner(cameras.get(0), processedVideo));
-
-      Thread visionThread = new Thread(() -> {
-        TargetTrackingRunner<?> lastRunner = null;
-        for (;;) {
-          String runnerName = SmartDashboard.getString("Vision/runnerName",
-              FuelCellTrackingRunner.class.getSimpleName());
-          TargetTrackingRunner<?> runner = runners.get(runnerName);
-
-          if (runner != lastRunner) {
-            if (lastRunner != null) {
-              lastRunner.stop();
-            }
-            if (runner != null) {
-              runner.start();
-            }
-          }
-
-          if (runner != null) {
-            runner.runOnce();
-          }
-          
-          lastRunner = runner;
-        }
-      });
-
-      visionThread.setDaemon(true);
-      visionThread.start();
+    // convert capture times to the time base of the NetworkTables server
+    serverClock = new ServerClock(server ? null : ntinst.getTable("Vision/clock"));
+    serverClock.start();
+
+    // lower the frame rates when the CPU is hot or loaded
+    governor = new FrameRateGovernor(Paths.get(thermalFile), Paths.get(loadFile),
+        ntinst.getTable("Vision/governor"));
+    governor.start();
+
+    // start image processing on each camera that names its runners, or on
+    // camera 0 with every runner if none does
+    boolean namespaced = cameraConfigs.stream().anyMatch(config -> !config.runners.isEmpty());
+    boolean recording = recorderFile != null;
+    for (int i = 0; i < cameras.size(); i++) {
+      List<String> runnerNames = cameraConfigs.get(i).runners;
+      if (!namespaced && i == 0) {
+        runnerNames = List.of(FuelCellTrackingRunner.class.getSimpleName(),
+            LoadingStationRunner.class.getSimpleName());
+      }
+      if (!runnerNames.isEmpty()) {
+        // record raw frames from the first processed camera if configured
+        startVision(cameras.get(i), cameraConfigs.get(i).name, runnerNames, namespaced, recording);
+        recording = false;
+      }
     }
 
     // loop forever
@@ -357,4 +419,87 @@ public final class Main {
       }
     }
   }
+
+  /**
+   * Start image processing on a camera, with its own output stream and vision thread.
+   */
+  public static void startVision(VideoSource camera, String cameraName, List<String> runnerNames,
+      boolean namespaced, boolean recording) {
+    System.out.println("Starting " + runnerNames + " on camera '" + cameraName + "'");
+    String tableName = namespaced ? "Vision/" + cameraName : "Vision";
+    CvSource processedVideo = CameraServer.getInstance().putVideo(
+        namespaced ? cameraName + " Processed" : "Processed", 320, 240);
+    VideoSink processedServer = CameraServer.getInstance().getServer("serve_" + processedVideo.getName());
+    FrameRecorder recorder = recording ? startRecorder(camera) : null;
+
+    Map<String, TargetTrackingRunner<?>> runners = new LinkedHashMap<>();
+    for (String runnerName : runnerNames) {
+      String runnerTableName = namespaced ? tableName + "/" + runnerName : null;
+      TargetTrackingRunner<?> runner;
+      if (FuelCellTrackingRunner.class.getSimpleName().equals(runnerName)) {
+        runner = new FuelCellTrackingRunner(camera, processedVideo, runnerTableName);
+      } else if (LoadingStationRunner.class.getSimpleName().equals(runnerName)) {
+        runner = new LoadingStationRunner(camera, processedVideo, runnerTableName);
+      } else {
+        parseError("camera '" + cameraName + "': unknown runner '" + runnerName + "'");
+        continue;
+      }
+      runner.setStreamServer(processedServer);
+      runner.setFrameRecorder(recorder);
+      runner.setGovernor(governor);
+      runner.setServerClock(serverClock);
+      runners.put(runnerName, runner);
+    }
+    if (runners.isEmpty()) {
+      return;
+    }
+
+    if ("multi".equals(pipelineMode)) {
+      // Run every runner on each captured frame; the camera config of the
+      // first runner is applied last and wins
+      List<TargetTrackingRunner<?>> allRunners = new ArrayList<>(runners.values());
+      for (int i = allRunners.size() - 1; i >= 0; i--) {
+        allRunners.get(i).start();
+      }
+      StagedRunner stagedRunner = new StagedRunner(allRunners, pipelineSlots);
+      stagedRunner.setGovernor(governor);
+      stagedRunner.start();
+    } else {
+      // Switch runners when runnerName changes in the camera's table
+      RunnerController controller = new RunnerController(NetworkTableInstance.getDefault().getTable(tableName),
+          runners, runners.keySet().iterator().next(), "staged".equals(pipelineMode), pipelineSlots);
+      controller.setGovernor(governor);
+      controller.start();
+    }
+  }
+
+  /**
+   * Start recording raw frames from a camera to the ring file.
+   */
+  public static FrameRecorder startRecorder(VideoSource camera) {
+    VideoMode videoMode = camera.getVideoMode();
+    int frameBytes = Math.max(640 * 480, videoMode.width * videoMode.height) * 3;
+    System.out.println("Recording " + recorderSlots + " frames to " + recorderFile);
+    try {
+      FrameRecorder recorder = new FrameRecorder(Paths.get(recorderFile), recorderSlots, frameBytes);
+      recorder.bind(NetworkTableInstance.getDefault().getTable("Vision/recorder"));
+      return recorder;
+    } catch (IOException | IllegalArgumentException ex) {
+      System.err.println("could not open recorder file '" + recorderFile + "': " + ex);
+      return null;
+    }
+  }
+
+  /**
+   * Replay recorded frames through the runners, without cameras or network tables.
+   */
+  private static void replay(String... args) {
+    try {
+      ReplayRunner.main(args);
+    } catch (IOException ex) {
+      System.err.println("could not replay: " + ex);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
 }
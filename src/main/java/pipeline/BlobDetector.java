@@ -0,0 +1,280 @@
+package pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfInt;
+import org.opencv.core.MatOfKeyPoint;
+import org.opencv.core.MatOfPoint;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Finds blobs in a binary mask by labelling its connected components once.
+ *
+ * <p>
+ * Components smaller than the minimum area are skipped using the pixel counts
+ * from the labelling. The remaining components are drawn into a scratch image
+ * whose outer contours are all traced in one pass. The shape of each component
+ * is measured from its outer contour in the same way as SimpleBlobDetector, and
+ * filtered by circularity, inertia ratio and convexity. Each blob is output as a keypoint
+ * at the centroid of the component, whose size is the diameter of a circle
+ * with the same area.
+ */
+public class BlobDetector {
+    /** The number of floats in each row of a MatOfKeyPoint. */
+    private static final int KEY_POINT_FIELDS = 7;
+
+    private final BlobParameters parameters;
+    private final Mat stats = new Mat();
+    private final Mat centroids = new Mat();
+    private final Mat hierarchy = new Mat();
+    private final List<MatOfPoint> contours = new ArrayList<>();
+    private final MatOfInt hull = new MatOfInt();
+    private int[] componentStats = new int[16 * Imgproc.CC_STAT_MAX];
+    private double[] componentCentroids = new double[16 * 2];
+    private boolean[] isBlob = new boolean[16];
+    private int[] labelPixels = new int[0];
+    private byte[] componentPixels = new byte[0];
+    private int[] contourHierarchy = new int[16 * 4];
+    private int[] points = new int[256];
+    private int[] hullIndices = new int[128];
+    private float[] keyPoints = new float[16 * KEY_POINT_FIELDS];
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param parameters The parameters used to filter the blobs.
+     */
+    public BlobDetector(BlobParameters parameters) {
+        this.parameters = parameters;
+    }
+
+    /**
+     * Returns the parameters used to filter the blobs.
+     *
+     * @return The blob detector parameters.
+     */
+    public BlobParameters getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Detects the blobs in a binary mask.
+     *
+     * @param mask     An 8-bit single channel image in which blobs are non-zero.
+     * @param blobList The output where the MatOfKeyPoint is stored.
+     * @param matPool  The pool from which the label and component images are
+     *                 taken for the duration of the call.
+     */
+    public void detect(Mat mask, MatOfKeyPoint blobList, MatPool matPool) {
+        Mat labels = matPool.acquire(mask.rows(), mask.cols(), CvType.CV_32SC1);
+        Mat component = matPool.acquire(mask.rows(), mask.cols(), CvType.CV_8UC1);
+        try {
+            detect(mask, blobList, labels, component);
+        } finally {
+            matPool.release(component);
+            matPool.release(labels);
+        }
+    }
+
+    /**
+     * Detects the blobs in a binary mask, using scratch images of the same size.
+     */
+    private void detect(Mat mask, MatOfKeyPoint blobList, Mat labels, Mat component) {
+        double minArea = parameters.getMinArea();
+
+        int count = Imgproc.connectedComponentsWithStats(mask, labels, stats, centroids, 8, CvType.CV_32S);
+        if (componentStats.length < count * Imgproc.CC_STAT_MAX) {
+            componentStats = new int[2 * count * Imgproc.CC_STAT_MAX];
+            componentCentroids = new double[2 * count * 2];
+            isBlob = new boolean[2 * count];
+        }
+        stats.get(0, 0, componentStats);
+        centroids.get(0, 0, componentCentroids);
+
+        // Label 0 is the background
+        isBlob[0] = false;
+        int candidates = 0;
+        for (int label = 1; label < count; label++) {
+            isBlob[label] = componentStats[label * Imgproc.CC_STAT_MAX + Imgproc.CC_STAT_AREA] >= minArea;
+            if (isBlob[label]) {
+                candidates++;
+            }
+        }
+        if (candidates > 0) {
+            filterShapes(labels, component);
+        }
+
+        int blobs = 0;
+        for (int label = 1; label < count; label++) {
+            if (!isBlob[label]) {
+                continue;
+            }
+            if (keyPoints.length < (blobs + 1) * KEY_POINT_FIELDS) {
+                float[] grown = new float[2 * keyPoints.length];
+                System.arraycopy(keyPoints, 0, grown, 0, keyPoints.length);
+                keyPoints = grown;
+            }
+            int area = componentStats[label * Imgproc.CC_STAT_MAX + Imgproc.CC_STAT_AREA];
+            int keyPoint = blobs * KEY_POINT_FIELDS;
+            keyPoints[keyPoint] = (float) componentCentroids[2 * label];
+            keyPoints[keyPoint + 1] = (float) componentCentroids[2 * label + 1];
+            keyPoints[keyPoint + 2] = (float) (2 * Math.sqrt(area / Math.PI));
+            keyPoints[keyPoint + 3] = -1;
+            keyPoints[keyPoint + 4] = 0;
+            keyPoints[keyPoint + 5] = 0;
+            keyPoints[keyPoint + 6] = -1;
+            blobs++;
+        }
+
+        blobList.create(blobs, 1, CvType.CV_32FC(KEY_POINT_FIELDS));
+        if (blobs > 0) {
+            blobList.put(0, 0, keyPoints);
+        }
+    }
+
+    /**
+     * Draws the components that are large enough to be blobs into the component
+     * image, traces all of their outer contours at once and clears the flag of
+     * each component whose shape is outside the limits.
+     */
+    private void filterShapes(Mat labels, Mat component) {
+        double minCircularity = parameters.getMinCircularity();
+        double maxCircularity = parameters.getMaxCircularity();
+        double minInertiaRatio = parameters.getMinInertiaRatio();
+        double minConvexity = parameters.getMinConvexity();
+
+        int total = (int) labels.total();
+        if (labelPixels.length < total) {
+            labelPixels = new int[total];
+            componentPixels = new byte[total];
+        }
+        labels.get(0, 0, labelPixels);
+        for (int i = 0; i < total; i++) {
+            componentPixels[i] = (byte) (isBlob[labelPixels[i]] ? 255 : 0);
+        }
+        component.put(0, 0, componentPixels);
+
+        // The outer contour of every component is at the top level, even inside
+        // the hole of another
+        contours.clear();
+        Imgproc.findContours(component, contours, hierarchy, Imgproc.RETR_CCOMP, Imgproc.CHAIN_APPROX_NONE);
+        try {
+            int contourCount = contours.size();
+            if (contourHierarchy.length < 4 * contourCount) {
+                contourHierarchy = new int[2 * 4 * contourCount];
+            }
+            if (contourCount > 0) {
+                hierarchy.get(0, 0, contourHierarchy);
+            }
+            int cols = labels.cols();
+            for (int i = 0; i < contourCount; i++) {
+                if (contourHierarchy[4 * i + 3] >= 0) {
+                    continue;
+                }
+                MatOfPoint contour = contours.get(i);
+                int count = (int) contour.total();
+                if (points.length < 2 * count) {
+                    points = new int[2 * (2 * count)];
+                }
+                contour.get(0, 0, points);
+                // The first point of an outer contour is a pixel of its component
+                int label = labelPixels[points[1] * cols + points[0]];
+                if (!hasBlobShape(contour, count, minCircularity, maxCircularity, minInertiaRatio, minConvexity)) {
+                    isBlob[label] = false;
+                }
+            }
+        } finally {
+            for (MatOfPoint each : contours) {
+                each.release();
+            }
+        }
+    }
+
+    /**
+     * Returns whether the circularity, inertia ratio and convexity of an outer
+     * contour, whose points have been copied to the point buffer, are within the
+     * limits.
+     */
+    private boolean hasBlobShape(MatOfPoint contour, int count, double minCircularity, double maxCircularity,
+            double minInertiaRatio, double minConvexity) {
+        // The moments of the polygon, computed as Imgproc.moments does
+        double a00 = 0;
+        double a10 = 0;
+        double a01 = 0;
+        double a20 = 0;
+        double a11 = 0;
+        double a02 = 0;
+        double perimeter = 0;
+        double previousX = points[2 * (count - 1)];
+        double previousY = points[2 * (count - 1) + 1];
+        for (int i = 0; i < count; i++) {
+            double x = points[2 * i];
+            double y = points[2 * i + 1];
+            double cross = previousX * y - x * previousY;
+            double sumX = previousX + x;
+            double sumY = previousY + y;
+            a00 += cross;
+            a10 += cross * sumX;
+            a01 += cross * sumY;
+            a20 += cross * (previousX * sumX + x * x);
+            a11 += cross * (previousX * (sumY + previousY) + x * (sumY + y));
+            a02 += cross * (previousY * sumY + y * y);
+            perimeter += Math.hypot(x - previousX, y - previousY);
+            previousX = x;
+            previousY = y;
+        }
+        if (Math.abs(a00) <= 1e-7) {
+            return false;
+        }
+        double sign = Math.signum(a00);
+        double area = sign * a00 / 2;
+        double m10 = sign * a10 / 6;
+        double m01 = sign * a01 / 6;
+        double mu20 = sign * a20 / 12 - m10 * m10 / area;
+        double mu11 = sign * a11 / 24 - m10 * m01 / area;
+        double mu02 = sign * a02 / 12 - m01 * m01 / area;
+
+        double circularity = 4 * Math.PI * area / (perimeter * perimeter);
+        if (circularity < minCircularity || circularity >= maxCircularity) {
+            return false;
+        }
+
+        if (inertiaRatio(mu20, mu11, mu02) < minInertiaRatio) {
+            return false;
+        }
+
+        Imgproc.convexHull(contour, hull);
+        int hullCount = (int) hull.total();
+        if (hullIndices.length < hullCount) {
+            hullIndices = new int[2 * hullCount];
+        }
+        hull.get(0, 0, hullIndices);
+        long twiceHullArea = 0;
+        for (int i = 0; i < hullCount; i++) {
+            int a = hullIndices[i];
+            int b = hullIndices[(i + 1) % hullCount];
+            twiceHullArea += (long) points[2 * a] * points[2 * b + 1] - (long) points[2 * b] * points[2 * a + 1];
+        }
+        double hullArea = Math.abs(twiceHullArea) / 2.0;
+        return hullArea > 0 && area / hullArea >= minConvexity;
+    }
+
+    /**
+     * Returns the ratio of the smallest to the largest moment of inertia of a
+     * contour, computed from its central moments as SimpleBlobDetector does.
+     */
+    private static double inertiaRatio(double mu20, double mu11, double mu02) {
+        double denominator = Math.sqrt(Math.pow(2 * mu11, 2) + Math.pow(mu20 - mu02, 2));
+        if (denominator <= 1e-2) {
+            return 1;
+        }
+        double cosMin = (mu20 - mu02) / denominator;
+        double sinMin = 2 * mu11 / denominator;
+        double iMin = 0.5 * (mu20 + mu02) - 0.5 * (mu20 - mu02) * cosMin - mu11 * sinMin;
+        double iMax = 0.5 * (mu20 + mu02) + 0.5 * (mu20 - mu02) * cosMin + mu11 * sinMin;
+        return iMin / iMax;
+    }
+}
@@ -0,0 +1,88 @@
+package pipeline;
+
+import java.util.function.DoubleConsumer;
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.networktables.EntryListenerFlags;
+import edu.wpi.first.networktables.NetworkTable;
+
+/**
+ * The tunable parameters of a blob detector.
+ *
+ * <p>
+ * The parameters may be changed from the network table listener thread while
+ * the detector reads them on the vision thread.
+ */
+public class BlobParameters {
+    private double minArea = 100.0;
+    private double minCircularity = 0.0;
+    private double maxCircularity = 1.0;
+    private double minInertiaRatio = 0.1;
+    private double minConvexity = 0.95;
+
+    public synchronized double getMinArea() {
+        return minArea;
+    }
+
+    public synchronized void setMinArea(double minArea) {
+        this.minArea = minArea;
+    }
+
+    public synchronized double getMinCircularity() {
+        return minCircularity;
+    }
+
+    public synchronized void setMinCircularity(double minCircularity) {
+        this.minCircularity = minCircularity;
+    }
+
+    public synchronized double getMaxCircularity() {
+        return maxCircularity;
+    }
+
+    public synchronized void setMaxCircularity(double maxCircularity) {
+        this.maxCircularity = maxCircularity;
+    }
+
+    public synchronized double getMinInertiaRatio() {
+        return minInertiaRatio;
+    }
+
+    public synchronized void setMinInertiaRatio(double minInertiaRatio) {
+        this.minInertiaRatio = minInertiaRatio;
+    }
+
+    public synchronized double getMinConvexity() {
+        return minConvexity;
+    }
+
+    public synchronized void setMinConvexity(double minConvexity) {
+        this.minConvexity = minConvexity;
+    }
+
+    /**
+     * Publishes the parameters to a network table and applies any changes made
+     * to them there.
+     *
+     * @param table The table in which to publish the parameters.
+     */
+    public void bind(NetworkTable table) {
+        bindNumber(table, "minArea", this::getMinArea, this::setMinArea);
+        bindNumber(table, "minCircularity", this::getMinCircularity, this::setMinCircularity);
+        bindNumber(table, "maxCircularity", this::getMaxCircularity, this::setMaxCircularity);
+        bindNumber(table, "minInertiaRatio", this::getMinInertiaRatio, this::setMinInertiaRatio);
+        bindNumber(table, "minConvexity", this::getMinConvexity, this::setMinConvexity);
+    }
+
+    /**
+     * Publishes a single parameter and listens for changes to it.
+     */
+    private static void bindNumber(NetworkTable table, String key, DoubleSupplier getter, DoubleConsumer setter) {
+        table.getEntry(key).setDefaultDouble(getter.getAsDouble());
+        table.getEntry(key).addListener(event -> {
+            if (event.value.isDouble()) {
+                setter.accept(event.value.getDouble());
+            }
+        }, EntryListenerFlags.kImmediate | EntryListenerFlags.kNew | EntryListenerFlags.kUpdate);
+    }
+}
@@ -0,0 +1,71 @@
+package pipeline;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfKeyPoint;
+
+import com.google.gson.JsonObject;
+
+import edu.wpi.first.networktables.NetworkTable;
+
+/**
+ * A stage that finds blobs in a binary mask with a {@link BlobDetector}.
+ *
+ * <p>
+ * Parameters: those of {@link BlobParameters}, by the names they are published
+ * under.
+ */
+class BlobsStage extends GraphStage {
+    private final BlobDetector blobDetector = new BlobDetector(new BlobParameters());
+    private final MatOfKeyPoint output = new MatOfKeyPoint();
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param name   The name of the stage.
+     * @param config The stage configuration.
+     * @param input  The stage whose output is the mask.
+     */
+    BlobsStage(String name, JsonObject config, GraphStage input) {
+        super(name, "blobs", input);
+        BlobParameters blobParameters = blobDetector.getParameters();
+        if (config.has("minArea")) {
+            blobParameters.setMinArea(config.get("minArea").getAsDouble());
+        }
+        if (config.has("minCircularity")) {
+            blobParameters.setMinCircularity(config.get("minCircularity").getAsDouble());
+        }
+        if (config.has("maxCircularity")) {
+            blobParameters.setMaxCircularity(config.get("maxCircularity").getAsDouble());
+        }
+        if (config.has("minInertiaRatio")) {
+            blobParameters.setMinInertiaRatio(config.get("minInertiaRatio").getAsDouble());
+        }
+        if (config.has("minConvexity")) {
+            blobParameters.setMinConvexity(config.get("minConvexity").getAsDouble());
+        }
+    }
+
+    /**
+     * Returns the parameters of the blob detector.
+     *
+     * @return The blob detector parameters.
+     */
+    BlobParameters getBlobParameters() {
+        return blobDetector.getParameters();
+    }
+
+    @Override
+    void bind(NetworkTable table) {
+        blobDetector.getParameters().bind(table);
+    }
+
+    @Override
+    void run(FrameCache frameCache, Mat source) {
+        blobDetector.detect(getInput(0).getImage(), output, frameCache.getMatPool());
+    }
+
+    @Override
+    MatOfKeyPoint getKeyPoints() {
+        return output;
+    }
+}
@@ -0,0 +1,115 @@
+package pipeline;
+
+import java.util.Arrays;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Classifies the pixels of a BGR image as inside or outside an HSV range, in a
+ * single pass over the image.
+ *
+ * <p>
+ * Each channel is quantized to {@value #LEVELS} levels, and a table of one bit
+ * for each of the quantized colors records whether the center of that color
+ * cell is within the range. The table is built by converting every cell center
+ * to HSV with OpenCV, so the classification matches {@code cvtColor} followed by
+ * {@code inRange} to within the quantization. It is rebuilt only when the range
+ * changes.
+ */
+public class ColorClassifier {
+    /** The number of quantized levels of each channel. */
+    private static final int LEVELS = 64;
+
+    /** The number of bits by which a channel is shifted to quantize it. */
+    private static final int SHIFT = 2;
+
+    private static final int CELLS = LEVELS * LEVELS * LEVELS;
+
+    private final long[] table = new long[CELLS / Long.SIZE];
+    private double[] hue;
+    private double[] saturation;
+    private double[] value;
+    private byte[] pixels = new byte[0];
+    private byte[] classes = new byte[0];
+
+    /**
+     * Classifies the pixels of an image.
+     *
+     * @param input      An 8-bit BGR image.
+     * @param hue        The min and max hue.
+     * @param saturation The min and max saturation.
+     * @param value      The min and max value.
+     * @param output     The mask in which to store the output, which is 255
+     *                   where the pixel is in range and 0 elsewhere.
+     */
+    public void classify(Mat input, double[] hue, double[] saturation, double[] value, Mat output) {
+        if (!Arrays.equals(hue, this.hue) || !Arrays.equals(saturation, this.saturation)
+                || !Arrays.equals(value, this.value)) {
+            build(hue, saturation, value);
+        }
+
+        int count = (int) input.total();
+        if (classes.length < count) {
+            pixels = new byte[3 * count];
+            classes = new byte[count];
+        }
+        input.get(0, 0, pixels);
+
+        for (int i = 0, p = 0; i < count; i++, p += 3) {
+            int cell = ((pixels[p] & 0xff) >>> SHIFT) << 12 | ((pixels[p + 1] & 0xff) >>> SHIFT) << 6
+                    | (pixels[p + 2] & 0xff) >>> SHIFT;
+            classes[i] = (byte) -(int) ((table[cell >>> 6] >>> cell) & 1);
+        }
+
+        output.create(input.rows(), input.cols(), CvType.CV_8UC1);
+        output.put(0, 0, classes);
+    }
+
+    /**
+     * Builds the table for an HSV range.
+     */
+    private void build(double[] hue, double[] saturation, double[] value) {
+        byte[] centers = new byte[3 * CELLS];
+        for (int cell = 0; cell < CELLS; cell++) {
+            centers[3 * cell] = center(cell >>> 12);
+            centers[3 * cell + 1] = center((cell >>> 6) & (LEVELS - 1));
+            centers[3 * cell + 2] = center(cell & (LEVELS - 1));
+        }
+
+        Mat bgr = new Mat(LEVELS * LEVELS, LEVELS, CvType.CV_8UC3);
+        Mat mask = new Mat();
+        try {
+            bgr.put(0, 0, centers);
+            Imgproc.cvtColor(bgr, bgr, Imgproc.COLOR_BGR2HSV);
+            Core.inRange(bgr, new Scalar(hue[0], saturation[0], value[0]),
+                    new Scalar(hue[1], saturation[1], value[1]), mask);
+            byte[] inRange = new byte[CELLS];
+            mask.get(0, 0, inRange);
+
+            Arrays.fill(table, 0);
+            for (int cell = 0; cell < CELLS; cell++) {
+                if (inRange[cell] != 0) {
+                    table[cell >>> 6] |= 1L << cell;
+                }
+            }
+        } finally {
+            bgr.release();
+            mask.release();
+        }
+
+        this.hue = hue.clone();
+        this.saturation = saturation.clone();
+        this.value = value.clone();
+    }
+
+    /**
+     * Returns the channel value at the center of a quantized level.
+     */
+    private static byte center(int level) {
+        return (byte) ((level << SHIFT) + (1 << (SHIFT - 1)));
+    }
+}
@@ -0,0 +1,16 @@
+package pipeline;
+
+import edu.wpi.first.vision.VisionPipeline;
+
+/**
+ * A vision pipeline that uses resources shared with other pipelines.
+ */
+public interface ContextPipeline extends VisionPipeline {
+    /**
+     * Sets the resources shared with the other pipelines that run on the same
+     * camera frames.
+     *
+     * @param context The shared resources.
+     */
+    void setContext(PipelineContext context);
+}
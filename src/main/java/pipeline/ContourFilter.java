@@ -0,0 +1,224 @@
+package pipeline;
+
+import java.util.List;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfInt;
+import org.opencv.core.MatOfPoint;
+import org.opencv.imgproc.Imgproc;
+
+import edu.wpi.first.networktables.NetworkTable;
+
+/**
+ * Filters contours through a cascade of tests, cheapest first, and scores the
+ * contours that pass.
+ *
+ * <p>
+ * A mask with too few non-zero pixels is not searched for contours at all.
+ * Each contour is then rejected by the first test it fails:
+ *
+ * <ol>
+ * <li>points: too few vertices, read from the size of the contour;</li>
+ * <li>area: too small an area, the zeroth moment of the contour computed
+ * natively without copying it;</li>
+ * <li>aspect: a bounding box whose height to width ratio is out of range,
+ * computed from the vertices copied into a reusable buffer;</li>
+ * <li>convexity: the perimeter of the convex hull divided by the perimeter of
+ * the contour is too low;</li>
+ * <li>solidity: the area of the contour divided by the area of its convex hull
+ * is too low.</li>
+ * </ol>
+ *
+ * The score of a contour that passes is its area, weighted by its solidity and
+ * by how close its aspect ratio is to that of the target. The number of
+ * rejections at each stage is counted and can be published.
+ */
+public class ContourFilter {
+    /**
+     * The stages of the cascade at which a contour, or a whole mask, can be
+     * rejected.
+     */
+    public enum Stage {
+        EMPTY, POINTS, AREA, ASPECT, CONVEXITY, SOLIDITY
+    }
+
+    /** The height to width ratio of the loading station target. */
+    private static final double TARGET_ASPECT_RATIO = 11.0 / 7.0;
+
+    private final ContourParameters parameters;
+    private final long[] rejected = new long[Stage.values().length];
+    private long passed = 0;
+    private final MatOfInt hull = new MatOfInt();
+    private int[] points = new int[256];
+    private int[] hullIndices = new int[128];
+    private double[] scores = new double[16];
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param parameters The parameters of the tests.
+     */
+    public ContourFilter(ContourParameters parameters) {
+        this.parameters = parameters;
+    }
+
+    /**
+     * Returns the parameters of the tests.
+     *
+     * @return The contour filter parameters.
+     */
+    public ContourParameters getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Returns whether a mask has enough non-zero pixels to be worth searching for
+     * contours.
+     *
+     * @param mask A binary mask.
+     * @return False if the mask is rejected.
+     */
+    public boolean hasEnoughPixels(Mat mask) {
+        if (Core.countNonZero(mask) < parameters.getMinNonZero()) {
+            rejected[Stage.EMPTY.ordinal()]++;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Filters contours, keeping those that pass every test.
+     *
+     * @param contours The contours to filter.
+     * @param output   The list in which to store the contours that pass, in their
+     *                 original order. Their scores are returned by
+     *                 {@link #getScore}.
+     */
+    public void filter(List<MatOfPoint> contours, List<MatOfPoint> output) {
+        output.clear();
+        for (MatOfPoint contour : contours) {
+            double score = score(contour);
+            if (score < 0) {
+                continue;
+            }
+            if (scores.length == output.size()) {
+                double[] grown = new double[2 * scores.length];
+                System.arraycopy(scores, 0, grown, 0, scores.length);
+                scores = grown;
+            }
+            scores[output.size()] = score;
+            output.add(contour);
+        }
+    }
+
+    /**
+     * Returns the score of a contour that passed the last filter.
+     *
+     * @param index The index of the contour in the output of the last filter.
+     * @return The score. Higher scores are more like the target.
+     */
+    public double getScore(int index) {
+        return scores[index];
+    }
+
+    /**
+     * Returns the number of rejections at a stage since the filter was created.
+     *
+     * @param stage The stage.
+     * @return The number of contours, or masks for {@link Stage#EMPTY}, rejected.
+     */
+    public long getRejected(Stage stage) {
+        return rejected[stage.ordinal()];
+    }
+
+    /**
+     * Publishes the number of rejections at each stage, and the number of
+     * contours that passed, since the filter was created.
+     *
+     * @param table The table in which to publish the counts.
+     */
+    public void publish(NetworkTable table) {
+        for (Stage stage : Stage.values()) {
+            table.getEntry(stage.name().toLowerCase()).setDouble(rejected[stage.ordinal()]);
+        }
+        table.getEntry("passed").setDouble(passed);
+    }
+
+    /**
+     * Runs a contour through the cascade.
+     *
+     * @return The score of the contour, or -1 if it is rejected.
+     */
+    private double score(MatOfPoint contour) {
+        int count = (int) contour.total();
+        if (count < parameters.getMinPoints()) {
+            return reject(Stage.POINTS);
+        }
+
+        double area = Imgproc.contourArea(contour);
+        if (area < parameters.getMinArea()) {
+            return reject(Stage.AREA);
+        }
+
+        if (points.length < 2 * count) {
+            points = new int[Math.max(2 * count, 2 * points.length)];
+        }
+        contour.get(0, 0, points);
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        double perimeter = 0;
+        for (int i = 0; i < 2 * count; i += 2) {
+            minX = Math.min(minX, points[i]);
+            minY = Math.min(minY, points[i + 1]);
+            maxX = Math.max(maxX, points[i]);
+            maxY = Math.max(maxY, points[i + 1]);
+            int next = i + 2 < 2 * count ? i + 2 : 0;
+            perimeter += Math.hypot(points[next] - points[i], points[next + 1] - points[i + 1]);
+        }
+        double aspectRatio = (double) (maxY - minY + 1) / (maxX - minX + 1);
+        if (aspectRatio < parameters.getMinAspectRatio() || aspectRatio > parameters.getMaxAspectRatio()) {
+            return reject(Stage.ASPECT);
+        }
+
+        Imgproc.convexHull(contour, hull);
+        int hullCount = (int) hull.total();
+        if (hullIndices.length < hullCount) {
+            hullIndices = new int[Math.max(hullCount, 2 * hullIndices.length)];
+        }
+        hull.get(0, 0, hullIndices);
+        double hullPerimeter = 0;
+        long twiceHullArea = 0;
+        for (int i = 0; i < hullCount; i++) {
+            int a = 2 * hullIndices[i];
+            int b = 2 * hullIndices[(i + 1) % hullCount];
+            hullPerimeter += Math.hypot(points[b] - points[a], points[b + 1] - points[a + 1]);
+            twiceHullArea += (long) points[a] * points[b + 1] - (long) points[b] * points[a + 1];
+        }
+        if (perimeter <= 0 || hullPerimeter / perimeter < parameters.getMinConvexity()) {
+            return reject(Stage.CONVEXITY);
+        }
+
+        double hullArea = Math.abs(twiceHullArea) / 2.0;
+        double solidity = hullArea > 0 ? area / hullArea : 0;
+        if (solidity < parameters.getMinSolidity()) {
+            return reject(Stage.SOLIDITY);
+        }
+
+        passed++;
+        double aspectMatch = Math.min(aspectRatio / TARGET_ASPECT_RATIO, TARGET_ASPECT_RATIO / aspectRatio);
+        return area * solidity * aspectMatch;
+    }
+
+    /**
+     * Counts a rejection at a stage.
+     *
+     * @return -1, the score of a rejected contour.
+     */
+    private double reject(Stage stage) {
+        rejected[stage.ordinal()]++;
+        return -1;
+    }
+}
@@ -0,0 +1,109 @@
+package pipeline;
+
+import java.util.function.DoubleConsumer;
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.networktables.EntryListenerFlags;
+import edu.wpi.first.networktables.NetworkTable;
+
+/**
+ * The tunable parameters of a contour filter.
+ *
+ * <p>
+ * The parameters may be changed from the network table listener thread while
+ * the filter reads them on the vision thread. Aspect ratios are the height of
+ * the bounding box divided by its width.
+ */
+public class ContourParameters {
+    private double minNonZero = 50.0;
+    private double minPoints = 4.0;
+    private double minArea = 50.0;
+    private double minAspectRatio = 0.5;
+    private double maxAspectRatio = 4.0;
+    private double minConvexity = 0.8;
+    private double minSolidity = 0.5;
+
+    public synchronized double getMinNonZero() {
+        return minNonZero;
+    }
+
+    public synchronized void setMinNonZero(double minNonZero) {
+        this.minNonZero = minNonZero;
+    }
+
+    public synchronized double getMinPoints() {
+        return minPoints;
+    }
+
+    public synchronized void setMinPoints(double minPoints) {
+        this.minPoints = minPoints;
+    }
+
+    public synchronized double getMinArea() {
+        return minArea;
+    }
+
+    public synchronized void setMinArea(double minArea) {
+        this.minArea = minArea;
+    }
+
+    public synchronized double getMinAspectRatio() {
+        return minAspectRatio;
+    }
+
+    public synchronized void setMinAspectRatio(double minAspectRatio) {
+        this.minAspectRatio = minAspectRatio;
+    }
+
+    public synchronized double getMaxAspectRatio() {
+        return maxAspectRatio;
+    }
+
+    public synchronized void setMaxAspectRatio(double maxAspectRatio) {
+        this.maxAspectRatio = maxAspectRatio;
+    }
+
+    public synchronized double getMinConvexity() {
+        return minConvexity;
+    }
+
+    public synchronized void setMinConvexity(double minConvexity) {
+        this.minConvexity = minConvexity;
+    }
+
+    public synchronized double getMinSolidity() {
+        return minSolidity;
+    }
+
+    public synchronized void setMinSolidity(double minSolidity) {
+        this.minSolidity = minSolidity;
+    }
+
+    /**
+     * Publishes the parameters to a network table and applies any changes made
+     * to them there.
+     *
+     * @param table The table in which to publish the parameters.
+     */
+    public void bind(NetworkTable table) {
+        bindNumber(table, "minNonZero", this::getMinNonZero, this::setMinNonZero);
+        bindNumber(table, "minPoints", this::getMinPoints, this::setMinPoints);
+        bindNumber(table, "minArea", this::getMinArea, this::setMinArea);
+        bindNumber(table, "minAspectRatio", this::getMinAspectRatio, this::setMinAspectRatio);
+        bindNumber(table, "maxAspectRatio", this::getMaxAspectRatio, this::setMaxAspectRatio);
+        bindNumber(table, "minConvexity", this::getMinConvexity, this::setMinConvexity);
+        bindNumber(table, "minSolidity", this::getMinSolidity, this::setMinSolidity);
+    }
+
+    /**
+     * Publishes a single parameter and listens for changes to it.
+     */
+    private static void bindNumber(NetworkTable table, String key, DoubleSupplier getter, DoubleConsumer setter) {
+        table.getEntry(key).setDefaultDouble(getter.getAsDouble());
+        table.getEntry(key).addListener(event -> {
+            if (event.value.isDouble()) {
+                setter.accept(event.value.getDouble());
+            }
+        }, EntryListenerFlags.kImmediate | EntryListenerFlags.kNew | EntryListenerFlags.kUpdate);
+    }
+}
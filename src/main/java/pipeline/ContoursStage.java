@@ -0,0 +1,74 @@
+package pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.imgproc.Imgproc;
+
+import com.google.gson.JsonObject;
+
+/**
+ * A stage that finds the contours in a binary mask.
+ *
+ * <p>
+ * Parameters: {@code externalOnly}, 1 to find only the outer contours and 0 to
+ * find all of them. If {@code gate} names a {@code filterContours} stage, the
+ * mask is not searched at all when that stage's filter finds it has too few
+ * non-zero pixels.
+ *
+ * <p>
+ * The contours of the last run are released when the stage runs again, rather
+ * than left for the garbage collector to finalize.
+ */
+class ContoursStage extends GraphStage {
+    private final int externalOnly;
+    private final List<MatOfPoint> output = new ArrayList<>();
+    private final Mat hierarchy = new Mat();
+    private ContourFilter gate;
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param name   The name of the stage.
+     * @param config The stage configuration.
+     * @param input  The stage whose output is the mask.
+     */
+    ContoursStage(String name, JsonObject config, GraphStage input) {
+        super(name, "contours", input);
+        externalOnly = parameters.add(config, "externalOnly", 0);
+    }
+
+    @Override
+    void resolve(JsonObject config, Map<String, GraphStage> stages) {
+        if (config.has("gate")) {
+            GraphStage stage = stages.get(config.get("gate").getAsString());
+            if (!(stage instanceof FilterContoursStage)) {
+                throw new IllegalArgumentException(
+                        "gate of stage " + getName() + " is not a filterContours stage: " + config.get("gate"));
+            }
+            gate = ((FilterContoursStage) stage).getContourFilter();
+        }
+    }
+
+    @Override
+    void run(FrameCache frameCache, Mat source) {
+        Mat input = getInput(0).getImage();
+        for (MatOfPoint contour : output) {
+            contour.release();
+        }
+        output.clear();
+        if (gate != null && !gate.hasEnoughPixels(input)) {
+            return;
+        }
+        int mode = parameters.get(externalOnly) != 0 ? Imgproc.RETR_EXTERNAL : Imgproc.RETR_LIST;
+        Imgproc.findContours(input, output, hierarchy, mode, Imgproc.CHAIN_APPROX_SIMPLE);
+    }
+
+    @Override
+    List<MatOfPoint> getContours() {
+        return output;
+    }
+}
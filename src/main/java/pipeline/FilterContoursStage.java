@@ -0,0 +1,81 @@
+package pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+
+import com.google.gson.JsonObject;
+
+import edu.wpi.first.networktables.NetworkTable;
+
+/**
+ * A stage that filters and scores contours with a {@link ContourFilter}.
+ *
+ * <p>
+ * Parameters: those of {@link ContourParameters}, by the names they are
+ * published under.
+ */
+class FilterContoursStage extends GraphStage {
+    private final ContourFilter contourFilter = new ContourFilter(new ContourParameters());
+    private final List<MatOfPoint> output = new ArrayList<>();
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param name   The name of the stage.
+     * @param config The stage configuration.
+     * @param input  The stage whose output is the contours.
+     */
+    FilterContoursStage(String name, JsonObject config, GraphStage input) {
+        super(name, "filterContours", input);
+        ContourParameters contourParameters = contourFilter.getParameters();
+        if (config.has("minNonZero")) {
+            contourParameters.setMinNonZero(config.get("minNonZero").getAsDouble());
+        }
+        if (config.has("minPoints")) {
+            contourParameters.setMinPoints(config.get("minPoints").getAsDouble());
+        }
+        if (config.has("minArea")) {
+            contourParameters.setMinArea(config.get("minArea").getAsDouble());
+        }
+        if (config.has("minAspectRatio")) {
+            contourParameters.setMinAspectRatio(config.get("minAspectRatio").getAsDouble());
+        }
+        if (config.has("maxAspectRatio")) {
+            contourParameters.setMaxAspectRatio(config.get("maxAspectRatio").getAsDouble());
+        }
+        if (config.has("minConvexity")) {
+            contourParameters.setMinConvexity(config.get("minConvexity").getAsDouble());
+        }
+        if (config.has("minSolidity")) {
+            contourParameters.setMinSolidity(config.get("minSolidity").getAsDouble());
+        }
+    }
+
+    /**
+     * Returns the contour filter, which holds the score of each filtered contour
+     * and the rejection counts.
+     *
+     * @return The contour filter.
+     */
+    ContourFilter getContourFilter() {
+        return contourFilter;
+    }
+
+    @Override
+    void bind(NetworkTable table) {
+        contourFilter.getParameters().bind(table);
+    }
+
+    @Override
+    void run(FrameCache frameCache, Mat source) {
+        contourFilter.filter(getInput(0).getContours(), output);
+    }
+
+    @Override
+    List<MatOfPoint> getContours() {
+        return output;
+    }
+}
@@ -0,0 +1,212 @@
+package pipeline;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * A cache of images derived from the current camera frame.
+ *
+ * <p>
+ * Each derived image is computed the first time a pipeline asks for it and is
+ * then shared by every other pipeline that asks for it during the same frame.
+ * The images derived by a fixed transform are the downscaled copies of the
+ * frame used by coarse-to-fine detection, and the stages of the pipeline graphs
+ * share their outputs through {@link #getShared}. The cache holds a single
+ * frame at a time; {@link #begin(Mat)} must be called before the pipelines are
+ * run on a new frame. Derived images are keyed by the
+ * sequence number the cache gives each frame and by their transform, or by a
+ * key naming the computation for images shared by {@link #getShared}.
+ *
+ * <p>
+ * The cache also holds the pool of scratch images for the frame, which is
+ * checked for leaks by {@link #end()}. The pool is strict, so that a leak is an
+ * error, when the {@value #STRICT_POOL_PROPERTY} system property is true.
+ */
+public class FrameCache {
+
+    /**
+     * The transforms from a source frame to a derived image.
+     */
+    public enum Transform {
+        /** The frame downscaled to half resolution. */
+        HALF,
+        /** The frame downscaled to quarter resolution. */
+        QUARTER
+    }
+
+    /**
+     * An image computed by a pipeline and shared with the other pipelines.
+     */
+    private static class SharedImage {
+        private final Mat image = new Mat();
+        private long sequence = -1;
+    }
+
+    /** The system property that makes the scratch image pool strict. */
+    public static final String STRICT_POOL_PROPERTY = "vision.strictMatPool";
+
+    private final Mat[] images = new Mat[Transform.values().length];
+    private final Map<String, SharedImage> sharedImages = new ConcurrentHashMap<>();
+    private final long[] sequences = new long[Transform.values().length];
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final MatPool matPool = new MatPool(Boolean.getBoolean(STRICT_POOL_PROPERTY));
+    private volatile Mat source;
+    private volatile long sequence = -1;
+
+    /**
+     * Constructs an instance of this class.
+     */
+    public FrameCache() {
+        for (int i = 0; i < images.length; i++) {
+            images[i] = new Mat();
+            sequences[i] = -1;
+        }
+    }
+
+    /**
+     * Starts caching images derived from a new frame.
+     *
+     * @param source The frame.
+     */
+    public synchronized void begin(Mat source) {
+        this.source = source;
+        this.sequence++;
+    }
+
+    /**
+     * Ends the current frame, once every pipeline is done with it, returning the
+     * scratch images to the pool.
+     *
+     * @throws IllegalStateException If the pool is strict and a scratch image was
+     *                               not released.
+     */
+    public void end() {
+        matPool.endFrame();
+    }
+
+    /**
+     * Returns the pool of scratch images for the current frame.
+     *
+     * @return The scratch image pool.
+     */
+    public MatPool getMatPool() {
+        return matPool;
+    }
+
+    /**
+     * Returns an image derived from the input image.
+     *
+     * <p>
+     * If the input is the current frame, the derived image is taken from the
+     * cache, computing it if this is the first request for it. Otherwise it is
+     * computed into the scratch image.
+     *
+     * @param input     The image from which to derive the image.
+     * @param transform The transform to apply.
+     * @param scratch   The image used when the input cannot be cached.
+     * @return The derived image. It must not be modified.
+     */
+    public Mat get(Mat input, Transform transform, Mat scratch) {
+        if (input != source) {
+            misses.incrementAndGet();
+            apply(input, transform, scratch);
+            return scratch;
+        }
+
+        int index = transform.ordinal();
+        synchronized (images[index]) {
+            if (sequences[index] == sequence) {
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+                apply(input, transform, images[index]);
+                sequences[index] = sequence;
+            }
+            return images[index];
+        }
+    }
+
+    /**
+     * Returns an image computed from the current frame by a computation that
+     * any pipeline may share.
+     *
+     * <p>
+     * If the input is the current frame, the image is taken from the cache,
+     * computing it if this is the first request for its key. Otherwise nothing is
+     * computed and the caller must compute the image itself.
+     *
+     * @param key     The key naming the computation. Two computations with the
+     *                same key must compute the same image from the same frame.
+     * @param input   The frame from which the image is computed.
+     * @param compute The computation, which stores the image in the image it is
+     *                given.
+     * @return The shared image, which must not be modified, or null if the input
+     *         is not the current frame.
+     */
+    public Mat getShared(String key, Mat input, Consumer<Mat> compute) {
+        if (input != source) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        SharedImage shared = sharedImages.computeIfAbsent(key, k -> new SharedImage());
+        synchronized (shared) {
+            if (shared.sequence == sequence) {
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+                compute.accept(shared.image);
+                shared.sequence = sequence;
+            }
+            return shared.image;
+        }
+    }
+
+    /**
+     * Returns the number of requests answered from the cache.
+     *
+     * @return The number of cache hits.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of requests that had to compute the derived image.
+     *
+     * @return The number of cache misses.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Computes a derived image.
+     */
+    private void apply(Mat input, Transform transform, Mat output) {
+        switch (transform) {
+        case HALF:
+            Imgproc.pyrDown(input, output);
+            break;
+        case QUARTER:
+            if (input == source) {
+                Imgproc.pyrDown(get(input, Transform.HALF, null), output);
+            } else {
+                Mat half = matPool.acquire((input.rows() + 1) / 2, (input.cols() + 1) / 2, input.type());
+                try {
+                    Imgproc.pyrDown(input, half);
+                    Imgproc.pyrDown(half, output);
+                } finally {
+                    matPool.release(half);
+                }
+            }
+            break;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package pipeline;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfKeyPoint;
+import org.opencv.core.MatOfPoint;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import edu.wpi.first.networktables.NetworkTableInstance;
+import utilities.LatencyProfile;
+import utilities.ResourceUtils;
+
+/**
+ * A pipeline built from a declarative graph of stages.
+ *
+ * <p>
+ * The graph is a JSON object whose {@code stages} array lists the stages in
+ * the order they run. Each stage has a {@code name}, a {@code type} and its
+ * inputs, either a single {@code input} or an {@code inputs} array, naming
+ * earlier stages or {@code source}, the image the pipeline is run on. Any other
+ * members are the parameters of the stage. The types are:
+ *
+ * <ul>
+ * <li>{@code threshold}: hue, saturation and value ranges to a binary
+ * mask;</li>
+ * <li>{@code erode} and {@code dilate}: morphology with a 3x3 kernel;</li>
+ * <li>{@code mask}: an image masked by a binary mask;</li>
+ * <li>{@code resize}: an image scaled by a factor;</li>
+ * <li>{@code blobs}: the blobs in a binary mask;</li>
+ * <li>{@code contours}: the contours in a binary mask;</li>
+ * <li>{@code filterContours}: the contours that pass a contour filter.</li>
+ * </ul>
+ *
+ * Every buffer is allocated when the graph is built. A stage with a
+ * {@code table} publishes its parameters in that subtable of the table given to
+ * {@link #bind(String)}, so that they can be changed at runtime. Stages that output images are shared
+ * through the frame cache, so that when several pipelines run on the same
+ * frame, a stage they have in common, with the same parameters and inputs, is
+ * computed once. Each stage records its latency under its name.
+ */
+public class GraphPipeline implements ContextPipeline {
+    private final SourceStage source = new SourceStage();
+    private final List<GraphStage> stages = new ArrayList<>();
+    private final Map<String, GraphStage> stagesByName = new HashMap<>();
+    private final Map<GraphStage, String> tables = new HashMap<>();
+    private PipelineContext context;
+    private LatencyProfile profile;
+    private int[] profileStages;
+
+    static {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    }
+
+    /**
+     * Constructs an instance of this class with its own pipeline context.
+     *
+     * @param graph The JSON graph of stages.
+     * @throws IllegalArgumentException If the graph is not valid.
+     */
+    public GraphPipeline(String graph) {
+        stagesByName.put(SourceStage.NAME, source);
+        JsonArray configs = new JsonParser().parse(graph).getAsJsonObject().getAsJsonArray("stages");
+        for (JsonElement element : configs) {
+            JsonObject config = element.getAsJsonObject();
+            GraphStage stage = createStage(config);
+            if (stagesByName.containsKey(stage.getName())) {
+                throw new IllegalArgumentException("duplicate stage '" + stage.getName() + "'");
+            }
+            stages.add(stage);
+            stagesByName.put(stage.getName(), stage);
+            if (config.has("table")) {
+                tables.put(stage, config.get("table").getAsString());
+            }
+        }
+        for (int i = 0; i < stages.size(); i++) {
+            stages.get(i).resolve(configs.get(i).getAsJsonObject(), stagesByName);
+        }
+        setContext(new PipelineContext());
+    }
+
+    /**
+     * Loads a JSON graph of stages from a resource.
+     *
+     * @param classObj The class relative to which the resource is found.
+     * @param resource The name of the resource.
+     * @return The graph.
+     */
+    protected static String loadGraph(Class<?> classObj, String resource) {
+        try {
+            return ResourceUtils.loadJsonResource(classObj, resource);
+        } catch (IOException e) {
+            throw new IllegalStateException("cannot load pipeline graph " + resource, e);
+        }
+    }
+
+    @Override
+    public void process(Mat source0) {
+        FrameCache frameCache = context.getFrameCache();
+        source.run(frameCache, source0);
+        for (int i = 0; i < stages.size(); i++) {
+            long start = System.nanoTime();
+            stages.get(i).run(frameCache, source0);
+            profile.record(profileStages[i], start);
+        }
+    }
+
+    @Override
+    public void setContext(PipelineContext context) {
+        this.context = context;
+        this.profile = context.getProfile();
+        this.profileStages = new int[stages.size()];
+        for (int i = 0; i < stages.size(); i++) {
+            profileStages[i] = profile.stage(stages.get(i).getName());
+        }
+    }
+
+    /**
+     * Publishes the parameters of each stage that names a table to that subtable
+     * of a table, and applies any changes made to them there.
+     *
+     * @param tableName The path of the table holding the stage tables, such as
+     *                  the table of the runner using the pipeline.
+     */
+    public void bind(String tableName) {
+        for (GraphStage stage : stages) {
+            String table = tables.get(stage);
+            if (table != null) {
+                stage.bind(NetworkTableInstance.getDefault().getTable(tableName + "/" + table));
+            }
+        }
+        for (GraphStage stage : stages) {
+            stage.clearKey();
+        }
+    }
+
+    /**
+     * Makes each stage read the parameters of the stage of the same name and type
+     * in another pipeline built from the same graph, such as the full resolution
+     * pipeline of which this is a downscaled copy. Stages whose parameters are
+     * held in a {@link BlobParameters} or {@link ContourParameters} keep their
+     * own, as a downscaled copy must scale their area limits.
+     *
+     * @param other The pipeline whose parameters are read.
+     */
+    public void shareParameters(GraphPipeline other) {
+        for (GraphStage stage : stages) {
+            GraphStage otherStage = other.stagesByName.get(stage.getName());
+            if (otherStage != null && otherStage.getClass() == stage.getClass()) {
+                stage.shareParameters(otherStage);
+            }
+        }
+        for (GraphStage stage : stages) {
+            stage.clearKey();
+        }
+    }
+
+    /**
+     * Returns the image output by a stage in the last run.
+     *
+     * @param name The name of the stage.
+     * @return The image. It must not be modified.
+     */
+    public Mat getImage(String name) {
+        return getStage(name).getImage();
+    }
+
+    /**
+     * Returns the key points output by a stage in the last run.
+     *
+     * @param name The name of the stage.
+     * @return The key points.
+     */
+    public MatOfKeyPoint getKeyPoints(String name) {
+        return getStage(name).getKeyPoints();
+    }
+
+    /**
+     * Returns the contours output by a stage in the last run.
+     *
+     * @param name The name of the stage.
+     * @return The contours.
+     */
+    public List<MatOfPoint> getContours(String name) {
+        return getStage(name).getContours();
+    }
+
+    /**
+     * Runs a single stage on the outputs its inputs had in the last run.
+     *
+     * @param name The name of the stage.
+     */
+    void runStage(String name) {
+        getStage(name).run(context.getFrameCache(), source.getImage());
+    }
+
+    /**
+     * Returns a stage by name.
+     *
+     * @param name The name of the stage.
+     * @return The stage.
+     * @throws IllegalArgumentException If there is no such stage.
+     */
+    GraphStage getStage(String name) {
+        GraphStage stage = stagesByName.get(name);
+        if (stage == null) {
+            throw new IllegalArgumentException("unknown stage '" + name + "'");
+        }
+        return stage;
+    }
+
+    /**
+     * Builds a stage from its configuration.
+     */
+    private GraphStage createStage(JsonObject config) {
+        String name = config.get("name").getAsString();
+        String type = config.get("type").getAsString();
+        List<GraphStage> inputs = new ArrayList<>();
+        if (config.has("input")) {
+            inputs.add(getStage(config.get("input").getAsString()));
+        }
+        if (config.has("inputs")) {
+            for (JsonElement input : config.getAsJsonArray("inputs")) {
+                inputs.add(getStage(input.getAsString()));
+            }
+        }
+        int expected = type.equals("mask") ? 2 : 1;
+        if (inputs.size() != expected) {
+            throw new IllegalArgumentException(
+                    "stage '" + name + "' has " + inputs.size() + " inputs, expected " + expected);
+        }
+
+        switch (type) {
+        case "threshold":
+            return new ThresholdStage(name, config, inputs.get(0));
+        case "erode":
+        case "dilate":
+            return new MorphologyStage(name, type, config, inputs.get(0));
+        case "mask":
+            return new MaskStage(name, inputs.get(0), inputs.get(1));
+        case "resize":
+            return new ResizeStage(name, config, inputs.get(0));
+        case "blobs":
+            return new BlobsStage(name, config, inputs.get(0));
+        case "contours":
+            return new ContoursStage(name, config, inputs.get(0));
+        case "filterContours":
+            return new FilterContoursStage(name, config, inputs.get(0));
+        default:
+            throw new IllegalArgumentException("unknown stage type '" + type + "'");
+        }
+    }
+}
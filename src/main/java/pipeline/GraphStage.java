@@ -0,0 +1,161 @@
+package pipeline;
+
+import java.util.List;
+import java.util.Map;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfKeyPoint;
+import org.opencv.core.MatOfPoint;
+
+import com.google.gson.JsonObject;
+
+import edu.wpi.first.networktables.NetworkTable;
+
+/**
+ * A stage of a pipeline graph, which computes its output from the outputs of
+ * its input stages.
+ *
+ * <p>
+ * A stage allocates its buffers when it is built and reuses them for every
+ * frame. Each stage has a key that is the same for two stages that compute the
+ * same output from the same frame: its type, its parameters and the keys of its
+ * inputs.
+ */
+abstract class GraphStage {
+    private final String name;
+    private final String type;
+    private final GraphStage[] inputs;
+    protected StageParameters parameters = new StageParameters();
+    private String key;
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param name   The name of the stage.
+     * @param type   The type of the stage.
+     * @param inputs The stages whose outputs are the inputs of this stage.
+     */
+    protected GraphStage(String name, String type, GraphStage... inputs) {
+        this.name = name;
+        this.type = type;
+        this.inputs = inputs;
+    }
+
+    /**
+     * Returns the name of the stage.
+     *
+     * @return The name, which is also the name of its latency profile stage.
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the input stage at an index.
+     *
+     * @param index The index of the input.
+     * @return The input stage.
+     */
+    protected GraphStage getInput(int index) {
+        return inputs[index];
+    }
+
+    /**
+     * Returns the key of the stage, which is the same for any stage computing
+     * the same output from the same frame.
+     *
+     * @return The key.
+     */
+    synchronized String getKey() {
+        if (key == null) {
+            StringBuilder builder = new StringBuilder(type).append('{').append(describe()).append("}(");
+            for (GraphStage input : inputs) {
+                builder.append(input.getKey()).append(',');
+            }
+            key = builder.append(')').toString();
+        }
+        return key;
+    }
+
+    /**
+     * Returns a description of the parameters of the stage for its key.
+     *
+     * @return The description.
+     */
+    protected String describe() {
+        return parameters.describe();
+    }
+
+    /**
+     * Resolves the references of the stage to other stages that are not its
+     * inputs, once all the stages of the graph have been built.
+     *
+     * @param config The stage configuration.
+     * @param stages The stages of the graph by name.
+     */
+    void resolve(JsonObject config, Map<String, GraphStage> stages) {
+    }
+
+    /**
+     * Publishes the parameters of the stage to a network table and applies any
+     * changes made to them there.
+     *
+     * @param table The table in which to publish the parameters.
+     */
+    void bind(NetworkTable table) {
+        parameters.bind(table);
+    }
+
+    /**
+     * Makes the stage read the parameters of a stage of the same type built from
+     * the same configuration, so that changes to either reach both.
+     *
+     * @param other The stage whose parameters are read.
+     */
+    synchronized void shareParameters(GraphStage other) {
+        parameters = other.parameters;
+    }
+
+    /**
+     * Forgets the key of the stage, so that it is recomputed once its
+     * parameters, or those of its inputs, have been bound.
+     */
+    synchronized void clearKey() {
+        key = null;
+    }
+
+    /**
+     * Computes the output of the stage from the outputs of its inputs.
+     *
+     * @param frameCache The cache of images derived from the current frame.
+     * @param source     The source image of the graph.
+     */
+    abstract void run(FrameCache frameCache, Mat source);
+
+    /**
+     * Returns the image output by the stage.
+     *
+     * @return The image.
+     */
+    Mat getImage() {
+        throw new IllegalStateException("stage " + name + " does not output an image");
+    }
+
+    /**
+     * Returns the key points output by the stage.
+     *
+     * @return The key points.
+     */
+    MatOfKeyPoint getKeyPoints() {
+        throw new IllegalStateException("stage " + name + " does not output key points");
+    }
+
+    /**
+     * Returns the contours output by the stage.
+     *
+     * @return The contours.
+     */
+    List<MatOfPoint> getContours() {
+        throw new IllegalStateException("stage " + name + " does not output contours");
+    }
+}
@@ -0,0 +1,54 @@
+package pipeline;
+
+import java.util.function.Consumer;
+
+import org.opencv.core.Mat;
+
+/**
+ * A stage of a pipeline graph that outputs an image.
+ *
+ * <p>
+ * When the graph runs on the current frame of its frame cache, the image is
+ * shared through the cache under the key of the stage, so that graphs with
+ * identical stages compute it once per frame. Otherwise it is computed into the
+ * stage's own buffer.
+ */
+abstract class ImageStage extends GraphStage {
+    private final Mat output = new Mat();
+    private final Consumer<Mat> compute = this::compute;
+    private Mat image = output;
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param name   The name of the stage.
+     * @param type   The type of the stage.
+     * @param inputs The stages whose outputs are the inputs of this stage.
+     */
+    protected ImageStage(String name, String type, GraphStage... inputs) {
+        super(name, type, inputs);
+    }
+
+    @Override
+    void run(FrameCache frameCache, Mat source) {
+        Mat shared = frameCache.getShared(getKey(), source, compute);
+        if (shared != null) {
+            image = shared;
+        } else {
+            compute(output);
+            image = output;
+        }
+    }
+
+    @Override
+    Mat getImage() {
+        return image;
+    }
+
+    /**
+     * Computes the image from the outputs of the inputs.
+     *
+     * @param output The image in which to store the output.
+     */
+    protected abstract void compute(Mat output);
+}
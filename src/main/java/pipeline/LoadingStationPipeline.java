@@ -1,115 +1,57 @@
 package pipeline;
 
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.HashMap;
 
-import edu.wpi.first.vision.VisionPipeline;
-
-import org.opencv.core.*;
-import org.opencv.core.Core.*;
-import org.opencv.features2d.FeatureDetector;
-import org.opencv.imgcodecs.Imgcodecs;
-import org.opencv.imgproc.*;
-import org.opencv.objdetect.*;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
 
 /**
 * LoadingStationPipeline class.
 *
-* <p>An OpenCV pipeline generated by GRIP.
-*
-* @author GRIP
+* <p>The loading station pipeline, first generated by GRIP, built from the graph
+* in LoadingStationPipeline.json: an HSV threshold, a search for the outer
+* contours, skipped when the mask is nearly empty, and a contour filter.
 */
-public class LoadingStationPipeline implements VisionPipeline {
-
-	//Outputs
-	private Mat hsvThresholdOutput = new Mat();
-	private ArrayList<MatOfPoint> findContoursOutput = new ArrayList<MatOfPoint>();
-
-	static {
-		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
-	}
+public class LoadingStationPipeline extends GraphPipeline {
 
 	/**
-	 * This is the primary method that runs the entire pipeline and updates the outputs.
+	 * Constructs an instance of this class with its own pipeline context.
 	 */
-	@Override	public void process(Mat source0) {
-		// Step HSV_Threshold0:
-		Mat hsvThresholdInput = source0;
-		double[] hsvThresholdHue = {45.32374100719424, 98.7144521424659};
-		double[] hsvThresholdSaturation = {64.97302304068916, 255.0};
-		double[] hsvThresholdValue = {48.92086476730788, 255.0};
-		hsvThreshold(hsvThresholdInput, hsvThresholdHue, hsvThresholdSaturation, hsvThresholdValue, hsvThresholdOutput);
-
-		// Step Find_Contours0:
-		Mat findContoursInput = hsvThresholdOutput;
-		boolean findContoursExternalOnly = false;
-		findContours(findContoursInput, findContoursExternalOnly, findContoursOutput);
-
+	public LoadingStationPipeline() {
+		super(loadGraph(LoadingStationPipeline.class, "LoadingStationPipeline.json"));
 	}
 
 	/**
-	 * This method is a generated getter for the output of a HSV_Threshold.
+	 * Returns the output of the HSV_Threshold step.
 	 * @return Mat output from HSV_Threshold.
 	 */
 	public Mat hsvThresholdOutput() {
-		return hsvThresholdOutput;
+		return getImage("hsvThreshold");
 	}
 
 	/**
-	 * This method is a generated getter for the output of a Find_Contours.
-	 * @return ArrayList<MatOfPoint> output from Find_Contours.
+	 * Returns the output of the Find_Contours step.
+	 * @return List<MatOfPoint> output from Find_Contours.
 	 */
-	public ArrayList<MatOfPoint> findContoursOutput() {
-		return findContoursOutput;
+	public List<MatOfPoint> findContoursOutput() {
+		return getContours("findContours");
 	}
 
-
 	/**
-	 * Segment an image based on hue, saturation, and value ranges.
-	 *
-	 * @param input The image on which to perform the HSL threshold.
-	 * @param hue The min and max hue
-	 * @param sat The min and max saturation
-	 * @param val The min and max value
-	 * @param output The image in which to store the output.
+	 * Returns the output of the Filter_Contours step.
+	 * @return List<MatOfPoint> output from Filter_Contours.
 	 */
-	private void hsvThreshold(Mat input, double[] hue, double[] sat, double[] val,
-	    Mat out) {
-		Imgproc.cvtColor(input, out, Imgproc.COLOR_BGR2HSV);
-		Core.inRange(out, new Scalar(hue[0], sat[0], val[0]),
-			new Scalar(hue[1], sat[1], val[1]), out);
+	public List<MatOfPoint> filterContoursOutput() {
+		return getContours("filterContours");
 	}
 
 	/**
-	 * Sets the values of pixels in a binary image to their distance to the nearest black pixel.
-	 * @param input The image on which to perform the Distance Transform.
-	 * @param type The Transform.
-	 * @param maskSize the size of the mask.
-	 * @param output The image in which to store the output.
+	 * Returns the contour filter used by the Filter_Contours step, which holds
+	 * the score of each filtered contour and the rejection counts.
+	 * @return The contour filter.
 	 */
-	private void findContours(Mat input, boolean externalOnly,
-		List<MatOfPoint> contours) {
-		Mat hierarchy = new Mat();
-		contours.clear();
-		int mode;
-		if (externalOnly) {
-			mode = Imgproc.RETR_EXTERNAL;
-		}
-		else {
-			mode = Imgproc.RETR_LIST;
-		}
-		int method = Imgproc.CHAIN_APPROX_SIMPLE;
-		Imgproc.findContours(input, contours, hierarchy, mode, method);
+	public ContourFilter contourFilter() {
+		return ((FilterContoursStage) getStage("filterContours")).getContourFilter();
 	}
 
-
-
-
 }
-
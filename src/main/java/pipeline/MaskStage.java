@@ -0,0 +1,34 @@
+package pipeline;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+
+/**
+ * A stage that keeps the pixels of an image where a binary mask is non-zero
+ * and clears the rest.
+ *
+ * <p>
+ * Inputs: the image, then the mask.
+ */
+class MaskStage extends ImageStage {
+    private final Scalar zero = new Scalar(0);
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param name  The name of the stage.
+     * @param input The stage whose output is masked.
+     * @param mask  The stage whose output is the mask.
+     */
+    MaskStage(String name, GraphStage input, GraphStage mask) {
+        super(name, "mask", input, mask);
+    }
+
+    @Override
+    protected void compute(Mat output) {
+        Mat input = getInput(0).getImage();
+        output.create(input.size(), input.type());
+        output.setTo(zero);
+        input.copyTo(output, getInput(1).getImage());
+    }
+}
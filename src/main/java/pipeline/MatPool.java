@@ -0,0 +1,192 @@
+package pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opencv.core.Mat;
+
+import edu.wpi.first.networktables.NetworkTable;
+
+/**
+ * A pool of scratch images scoped to a frame.
+ *
+ * <p>
+ * A Mat's native memory is otherwise only freed when the garbage collector
+ * finalizes it, which may be long after the heap looks idle. Scratch images are
+ * instead acquired from the pool by size and type and released back to it, so
+ * the same native buffers are reused from frame to frame. At the end of each
+ * frame, images still checked out are counted as leaks and returned to the
+ * pool, and pooled images that have not been used for {@value #MAX_IDLE_FRAMES}
+ * frames are released. In strict mode, a frame that ends with images still
+ * checked out is an error. The pool may be used by several pipelines at once.
+ */
+public class MatPool {
+    /** The number of frames a pooled image is kept without being used. */
+    private static final int MAX_IDLE_FRAMES = 30;
+
+    /**
+     * A pooled image.
+     */
+    private static class Entry {
+        private final Mat mat;
+        private final int rows;
+        private final int cols;
+        private final int type;
+        private final long bytes;
+        private long lastFrame;
+
+        private Entry(int rows, int cols, int type) {
+            this.mat = new Mat(rows, cols, type);
+            this.rows = rows;
+            this.cols = cols;
+            this.type = type;
+            this.bytes = mat.total() * mat.elemSize();
+        }
+    }
+
+    private final boolean strict;
+    private final List<Entry> free = new ArrayList<>();
+    private final List<Entry> checkedOut = new ArrayList<>();
+    private long frame = 0;
+    private long liveBytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long leaks = 0;
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param strict Whether ending a frame with images still checked out throws
+     *               an exception.
+     */
+    public MatPool(boolean strict) {
+        this.strict = strict;
+    }
+
+    /**
+     * Checks out an image, reusing a pooled one of the same size and type if
+     * there is one.
+     *
+     * @param rows The number of rows.
+     * @param cols The number of columns.
+     * @param type The OpenCV type.
+     * @return The image, whose contents are undefined. It must be released back
+     *         to the pool before the end of the frame.
+     */
+    public synchronized Mat acquire(int rows, int cols, int type) {
+        for (int i = free.size() - 1; i >= 0; i--) {
+            Entry entry = free.get(i);
+            if (entry.rows == rows && entry.cols == cols && entry.type == type) {
+                free.remove(i);
+                checkedOut.add(entry);
+                hits++;
+                return entry.mat;
+            }
+        }
+        Entry entry = new Entry(rows, cols, type);
+        checkedOut.add(entry);
+        liveBytes += entry.bytes;
+        misses++;
+        return entry.mat;
+    }
+
+    /**
+     * Returns an image to the pool.
+     *
+     * @param mat An image checked out of this pool.
+     * @throws IllegalArgumentException If the image is not checked out of this
+     *                                  pool.
+     */
+    public synchronized void release(Mat mat) {
+        for (int i = checkedOut.size() - 1; i >= 0; i--) {
+            Entry entry = checkedOut.get(i);
+            if (entry.mat == mat) {
+                checkedOut.remove(i);
+                entry.lastFrame = frame;
+                free.add(entry);
+                return;
+            }
+        }
+        throw new IllegalArgumentException("image is not checked out of this pool");
+    }
+
+    /**
+     * Ends the current frame. Images still checked out are counted as leaks and
+     * returned to the pool, and images idle for too long are released.
+     *
+     * @throws IllegalStateException In strict mode, if images were still checked
+     *                               out.
+     */
+    public synchronized void endFrame() {
+        int leaked = checkedOut.size();
+        for (Entry entry : checkedOut) {
+            entry.lastFrame = frame;
+            free.add(entry);
+        }
+        checkedOut.clear();
+        leaks += leaked;
+
+        for (int i = free.size() - 1; i >= 0; i--) {
+            Entry entry = free.get(i);
+            if (frame - entry.lastFrame > MAX_IDLE_FRAMES) {
+                free.remove(i);
+                entry.mat.release();
+                liveBytes -= entry.bytes;
+            }
+        }
+        frame++;
+
+        if (strict && leaked > 0) {
+            throw new IllegalStateException(leaked + " images still checked out at the end of frame " + (frame - 1));
+        }
+    }
+
+    /**
+     * Returns the native memory held by the pool.
+     *
+     * @return The bytes of image data in the pool, checked out or not.
+     */
+    public synchronized long getLiveBytes() {
+        return liveBytes;
+    }
+
+    /**
+     * Returns the number of requests answered with a pooled image.
+     *
+     * @return The number of pool hits.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of requests that had to allocate an image.
+     *
+     * @return The number of pool misses.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of images that were still checked out at the end of a
+     * frame.
+     *
+     * @return The number of leaks.
+     */
+    public synchronized long getLeaks() {
+        return leaks;
+    }
+
+    /**
+     * Publishes the live bytes, hits, misses and leaks of the pool.
+     *
+     * @param table The table in which to publish the counts.
+     */
+    public synchronized void publish(NetworkTable table) {
+        table.getEntry("liveBytes").setDouble(liveBytes);
+        table.getEntry("hits").setDouble(hits);
+        table.getEntry("misses").setDouble(misses);
+        table.getEntry("leaks").setDouble(leaks);
+    }
+}
@@ -0,0 +1,49 @@
+package pipeline;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import com.google.gson.JsonObject;
+
+/**
+ * A stage that erodes or dilates an image with a 3x3 kernel and a constant
+ * border.
+ *
+ * <p>
+ * Parameters: {@code iterations}.
+ */
+class MorphologyStage extends ImageStage {
+    private final boolean erode;
+    private final int iterations;
+    private final Mat kernel = new Mat();
+    private final Point anchor = new Point(-1, -1);
+    private final Scalar borderValue = new Scalar(-1);
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param name   The name of the stage.
+     * @param type   The type of the stage, {@code erode} or {@code dilate}.
+     * @param config The stage configuration.
+     * @param input  The stage whose output is eroded or dilated.
+     */
+    MorphologyStage(String name, String type, JsonObject config, GraphStage input) {
+        super(name, type, input);
+        this.erode = type.equals("erode");
+        iterations = parameters.add(config, "iterations", 1);
+    }
+
+    @Override
+    protected void compute(Mat output) {
+        Mat input = getInput(0).getImage();
+        int count = (int) parameters.get(iterations);
+        if (erode) {
+            Imgproc.erode(input, output, kernel, anchor, count, Core.BORDER_CONSTANT, borderValue);
+        } else {
+            Imgproc.dilate(input, output, kernel, anchor, count, Core.BORDER_CONSTANT, borderValue);
+        }
+    }
+}
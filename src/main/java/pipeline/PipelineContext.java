@@ -0,0 +1,40 @@
+package pipeline;
+
+import utilities.LatencyProfile;
+
+/**
+ * Resources shared by the pipelines that run on the same camera frames.
+ */
+public class PipelineContext {
+    private volatile FrameCache frameCache = new FrameCache();
+    private final LatencyProfile profile = new LatencyProfile();
+
+    /**
+     * Returns the cache of images derived from the current frame.
+     *
+     * @return The frame cache.
+     */
+    public FrameCache getFrameCache() {
+        return frameCache;
+    }
+
+    /**
+     * Sets the cache of images derived from the current frame. Pipelines that run
+     * on the same frames share a cache so that each derived image is computed
+     * once.
+     *
+     * @param frameCache The frame cache.
+     */
+    public void setFrameCache(FrameCache frameCache) {
+        this.frameCache = frameCache;
+    }
+
+    /**
+     * Returns the latency histograms of the pipeline steps and runner phases.
+     *
+     * @return The latency profile.
+     */
+    public LatencyProfile getProfile() {
+        return profile;
+    }
+}
@@ -0,0 +1,40 @@
+package pipeline;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import com.google.gson.JsonObject;
+
+/**
+ * A stage that scales an image.
+ *
+ * <p>
+ * Parameters: {@code scale}, the factor by which both dimensions are
+ * multiplied, and {@code interpolation}, an OpenCV interpolation flag which
+ * defaults to area interpolation.
+ */
+class ResizeStage extends ImageStage {
+    private final int scale;
+    private final int interpolation;
+    private final Size size = new Size();
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param name   The name of the stage.
+     * @param config The stage configuration.
+     * @param input  The stage whose output is scaled.
+     */
+    ResizeStage(String name, JsonObject config, GraphStage input) {
+        super(name, "resize", input);
+        scale = parameters.add(config, "scale", 0.5);
+        interpolation = parameters.add(config, "interpolation", Imgproc.INTER_AREA);
+    }
+
+    @Override
+    protected void compute(Mat output) {
+        double factor = parameters.get(scale);
+        Imgproc.resize(getInput(0).getImage(), output, size, factor, factor, (int) parameters.get(interpolation));
+    }
+}
@@ -0,0 +1,31 @@
+package pipeline;
+
+import org.opencv.core.Mat;
+
+/**
+ * The stage of a pipeline graph that outputs the image the graph is run on,
+ * named {@code source}.
+ */
+class SourceStage extends GraphStage {
+    /** The name by which other stages refer to the source. */
+    static final String NAME = "source";
+
+    private Mat image;
+
+    /**
+     * Constructs an instance of this class.
+     */
+    SourceStage() {
+        super(NAME, NAME);
+    }
+
+    @Override
+    void run(FrameCache frameCache, Mat source) {
+        image = source;
+    }
+
+    @Override
+    Mat getImage() {
+        return image;
+    }
+}
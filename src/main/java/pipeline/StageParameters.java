@@ -0,0 +1,126 @@
+package pipeline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import edu.wpi.first.networktables.EntryListenerFlags;
+import edu.wpi.first.networktables.NetworkTable;
+
+/**
+ * The tunable parameters of a stage of a pipeline graph, each a number or a
+ * fixed-length array of numbers such as a min and max.
+ *
+ * <p>
+ * A stage adds its parameters when it is built and then reads them by index
+ * on every frame, without allocating. The parameters may be changed from the
+ * network table listener thread while the stage reads them on the vision thread.
+ */
+class StageParameters {
+    private final List<String> names = new ArrayList<>();
+    private final List<double[]> values = new ArrayList<>();
+    private String tableName;
+
+    /**
+     * Adds a parameter, taking its value from the stage configuration if it is
+     * there.
+     *
+     * @param config   The stage configuration.
+     * @param name     The name of the parameter.
+     * @param defaults The default value.
+     * @return The index of the parameter.
+     */
+    synchronized int add(JsonObject config, String name, double... defaults) {
+        double[] value = defaults.clone();
+        JsonElement element = config.get(name);
+        if (element != null && element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            for (int i = 0; i < value.length && i < array.size(); i++) {
+                value[i] = array.get(i).getAsDouble();
+            }
+        } else if (element != null) {
+            value[0] = element.getAsDouble();
+        }
+        names.add(name);
+        values.add(value);
+        return names.size() - 1;
+    }
+
+    /**
+     * Returns the value of a single number parameter.
+     *
+     * @param index The index of the parameter.
+     * @return The value.
+     */
+    synchronized double get(int index) {
+        return values.get(index)[0];
+    }
+
+    /**
+     * Copies the value of an array parameter.
+     *
+     * @param index The index of the parameter.
+     * @param value The array into which to copy the value.
+     */
+    synchronized void get(int index, double[] value) {
+        double[] current = values.get(index);
+        System.arraycopy(current, 0, value, 0, current.length);
+    }
+
+    /**
+     * Sets the value of a parameter, if it has the right length.
+     */
+    private synchronized void set(int index, double[] value) {
+        if (value.length == values.get(index).length) {
+            values.set(index, value.clone());
+        }
+    }
+
+    /**
+     * Publishes the parameters to a network table and applies any changes made
+     * to them there.
+     *
+     * @param table The table in which to publish the parameters.
+     */
+    synchronized void bind(NetworkTable table) {
+        tableName = table.getPath();
+        for (int i = 0; i < names.size(); i++) {
+            int index = i;
+            double[] value = values.get(i);
+            if (value.length == 1) {
+                table.getEntry(names.get(i)).setDefaultDouble(value[0]);
+            } else {
+                table.getEntry(names.get(i)).setDefaultDoubleArray(value);
+            }
+            table.getEntry(names.get(i)).addListener(event -> {
+                if (event.value.isDouble()) {
+                    set(index, new double[] { event.value.getDouble() });
+                } else if (event.value.isDoubleArray()) {
+                    set(index, event.value.getDoubleArray());
+                }
+            }, EntryListenerFlags.kImmediate | EntryListenerFlags.kNew | EntryListenerFlags.kUpdate);
+        }
+    }
+
+    /**
+     * Returns a description of the parameters that is the same for two sets of
+     * parameters that always have the same values: the table they are bound to,
+     * or their values if they are not bound.
+     *
+     * @return The description.
+     */
+    synchronized String describe() {
+        if (tableName != null) {
+            return tableName;
+        }
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < names.size(); i++) {
+            description.append(names.get(i)).append('=').append(Arrays.toString(values.get(i))).append(';');
+        }
+        return description.toString();
+    }
+}
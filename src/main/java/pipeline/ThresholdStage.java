@@ -0,0 +1,45 @@
+package pipeline;
+
+import org.opencv.core.Mat;
+
+import com.google.gson.JsonObject;
+
+/**
+ * A stage that segments a BGR image into a binary mask by hue, saturation and
+ * value ranges, through a {@link ColorClassifier}.
+ *
+ * <p>
+ * Parameters: {@code hue}, {@code saturation} and {@code value}, each a min and
+ * max.
+ */
+class ThresholdStage extends ImageStage {
+    private final ColorClassifier colorClassifier = new ColorClassifier();
+    private final int hue;
+    private final int saturation;
+    private final int value;
+    private final double[] hueRange = new double[2];
+    private final double[] saturationRange = new double[2];
+    private final double[] valueRange = new double[2];
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param name   The name of the stage.
+     * @param config The stage configuration.
+     * @param input  The stage whose output is thresholded.
+     */
+    ThresholdStage(String name, JsonObject config, GraphStage input) {
+        super(name, "threshold", input);
+        hue = parameters.add(config, "hue", 0, 180);
+        saturation = parameters.add(config, "saturation", 0, 255);
+        value = parameters.add(config, "value", 0, 255);
+    }
+
+    @Override
+    protected void compute(Mat output) {
+        parameters.get(hue, hueRange);
+        parameters.get(saturation, saturationRange);
+        parameters.get(value, valueRange);
+        colorClassifier.classify(getInput(0).getImage(), hueRange, saturationRange, valueRange, output);
+    }
+}
@@ -0,0 +1,48 @@
+package runner;
+
+import org.opencv.core.Mat;
+
+/**
+ * A preallocated camera frame that is handed from one processing stage to the
+ * next.
+ */
+public class Frame {
+    /** The image, allocated once and overwritten by each capture. */
+    public final Mat image;
+
+    /** The number of the frame since capture started. */
+    public long sequence;
+
+    /** The time at which the frame was captured, from System.nanoTime(). */
+    public long captureTime;
+
+    /** The time at which the frame was captured, in microseconds in the server time base. */
+    public long timestamp;
+
+    /** The time at which post processing started, from System.nanoTime(). */
+    public long postProcessTime;
+
+    /** Whether the frame is annotated and put to the output video stream. */
+    public boolean streamDue;
+
+    /** The annotations to draw on the output video, in image coordinates. */
+    public final Overlay overlay = new Overlay();
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param width  The width of the image, in pixels.
+     * @param height The height of the image, in pixels.
+     * @param type   The OpenCV type of the image.
+     */
+    public Frame(int width, int height, int type) {
+        this.image = new Mat(height, width, type);
+    }
+
+    /**
+     * Releases the native memory held by the image.
+     */
+    public void release() {
+        image.release();
+    }
+}
@@ -0,0 +1,273 @@
+package runner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import utilities.LatencyHistogram;
+
+/**
+ * Lowers the processing rate, the stream rate and optionally the stream
+ * resolution, one step at a time, to keep the CPU below a target temperature
+ * and the vision loop within a latency budget.
+ *
+ * <p>
+ * Once a second the governor reads the CPU temperature, in millidegrees, from
+ * a thermal zone file such as {@code /sys/class/thermal/thermal_zone0/temp},
+ * and the one minute load average from a file laid out like
+ * {@code /proc/loadavg}. The paths are configurable so the governor can be run
+ * against stub files. It steps down when the temperature is over
+ * {@code targetTemperature}, the load per core is over {@code maxLoad} or the
+ * 95th percentile of the vision loop latency is over {@code latencyBudget}
+ * milliseconds. It steps back up once all three are well within their limits.
+ * Each step is held for {@value #HOLD_SECONDS} seconds, as the temperature is
+ * slow to respond. A value that cannot be read is ignored.
+ *
+ * <p>
+ * The governor also publishes the resident memory of the process, read from
+ * {@code /proc/self/status}, and the part of it outside the Java heap, which
+ * includes the image data of every Mat. They are read here, once a second for
+ * the whole process, rather than by each runner.
+ *
+ * <p>
+ * The vision threads call {@link #pace} between frames to keep under the frame
+ * rate of the current step. The settings are read from, and the current state
+ * published to, the bound network table.
+ */
+public class FrameRateGovernor {
+    /** The largest processing rate at each step, in frames per second, or 0 for no limit. */
+    private static final int[] MAX_FPS = { 0, 20, 15, 10, 5 };
+
+    /** The stream frame rate at each step, as a fraction of its configured rate. */
+    private static final double[] STREAM_RATES = { 1.0, 0.75, 0.5, 0.33, 0.25 };
+
+    /** The lowest stream resolution step of the stream controller at each step. */
+    private static final int[] STREAM_STEPS = { 0, 0, 1, 2, 2 };
+
+    private static final long CHECK_PERIOD = 1000000000L;
+    private static final long HOLD_SECONDS = 10;
+
+    /** The file from which the resident set size of the process is read. */
+    private static final Path STATUS_PATH = Paths.get("/proc/self/status");
+
+    private final Path thermalPath;
+    private final Path loadPath;
+    private final LatencyHistogram latency = new LatencyHistogram(5, 1000);
+    private final NetworkTableEntry targetTemperatureEntry;
+    private final NetworkTableEntry maxLoadEntry;
+    private final NetworkTableEntry latencyBudgetEntry;
+    private final NetworkTableEntry scaleStreamEntry;
+    private final NetworkTableEntry temperatureEntry;
+    private final NetworkTableEntry loadEntry;
+    private final NetworkTableEntry latencyEntry;
+    private final NetworkTableEntry stepEntry;
+    private final NetworkTableEntry maxFpsEntry;
+    private final NetworkTableEntry streamRateEntry;
+    private final NetworkTableEntry streamStepEntry;
+    private final NetworkTableEntry residentBytesEntry;
+    private final NetworkTableEntry nativeBytesEntry;
+    private volatile int step = 0;
+    private volatile boolean scaleStream = false;
+    private long lastStepTime;
+    private Thread thread;
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param thermalPath The file holding the CPU temperature, in millidegrees
+     *                    Celsius.
+     * @param loadPath    The file whose first field is the one minute load
+     *                    average.
+     * @param table       The table holding the governor settings and state.
+     */
+    public FrameRateGovernor(Path thermalPath, Path loadPath, NetworkTable table) {
+        this.thermalPath = thermalPath;
+        this.loadPath = loadPath;
+        this.targetTemperatureEntry = table.getEntry("targetTemperature");
+        this.maxLoadEntry = table.getEntry("maxLoad");
+        this.latencyBudgetEntry = table.getEntry("latencyBudget");
+        this.scaleStreamEntry = table.getEntry("scaleStream");
+        this.temperatureEntry = table.getEntry("temperature");
+        this.loadEntry = table.getEntry("load");
+        this.latencyEntry = table.getEntry("latencyP95");
+        this.stepEntry = table.getEntry("step");
+        this.maxFpsEntry = table.getEntry("maxFps");
+        this.streamRateEntry = table.getEntry("streamRate");
+        this.streamStepEntry = table.getEntry("streamStep");
+        this.residentBytesEntry = table.getEntry("residentBytes");
+        this.nativeBytesEntry = table.getEntry("nativeBytes");
+        this.targetTemperatureEntry.setDefaultDouble(70);
+        this.maxLoadEntry.setDefaultDouble(1.0);
+        this.latencyBudgetEntry.setDefaultDouble(50);
+        this.scaleStreamEntry.setDefaultBoolean(false);
+        publish(Double.NaN, Double.NaN, 0);
+    }
+
+    /**
+     * Starts the thread that reads the temperature and load and adjusts the
+     * step.
+     */
+    public void start() {
+        thread = new Thread(this::run, "FrameRateGovernor");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Records the latency of one iteration of a vision loop.
+     *
+     * @param nanos The time from capture to output, in nanoseconds.
+     */
+    public void recordLatency(long nanos) {
+        synchronized (latency) {
+            latency.record(nanos);
+        }
+    }
+
+    /**
+     * Waits until the next frame may be processed at the frame rate of the
+     * current step.
+     *
+     * @param lastFrameTime The {@link System#nanoTime} at which the last frame
+     *                      started.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public void pace(long lastFrameTime) throws InterruptedException {
+        int maxFps = MAX_FPS[step];
+        if (maxFps <= 0) {
+            return;
+        }
+        long period = 1000000000L / maxFps;
+        long wait = lastFrameTime + period - System.nanoTime();
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(Math.min(wait, period));
+        }
+    }
+
+    /**
+     * Returns the stream frame rate at the current step.
+     *
+     * @return The fraction of the configured stream frame rate.
+     */
+    public double getStreamRate() {
+        return STREAM_RATES[step];
+    }
+
+    /**
+     * Returns the lowest stream resolution step at the current step.
+     *
+     * @return The stream controller step, or 0 if the stream resolution is not
+     *         governed.
+     */
+    public int getStreamStep() {
+        return scaleStream ? STREAM_STEPS[step] : 0;
+    }
+
+    /**
+     * The governor thread. Adjusts the step once a check period.
+     */
+    private void run() {
+        try {
+            while (!Thread.interrupted()) {
+                update(System.nanoTime());
+                TimeUnit.NANOSECONDS.sleep(CHECK_PERIOD);
+            }
+        } catch (InterruptedException e) {
+            // Stopped
+        }
+    }
+
+    /**
+     * Reads the temperature, load and latency, steps down or up if they call
+     * for it and publishes the state.
+     *
+     * @param now The {@link System#nanoTime} of the update, against which the
+     *            hold period of the last step is measured.
+     */
+    void update(long now) {
+        double temperature = readField(thermalPath) / 1000.0;
+        double load = readField(loadPath) / Runtime.getRuntime().availableProcessors();
+        double p95;
+        synchronized (latency) {
+            p95 = latency.getPercentile(95);
+        }
+        scaleStream = scaleStreamEntry.getBoolean(false);
+
+        double targetTemperature = targetTemperatureEntry.getDouble(70);
+        double maxLoad = maxLoadEntry.getDouble(1.0);
+        double latencyBudget = latencyBudgetEntry.getDouble(50);
+        if (now - lastStepTime >= TimeUnit.SECONDS.toNanos(HOLD_SECONDS)) {
+            // Comparisons with NaN are false, so unreadable values count as within limits
+            boolean over = temperature > targetTemperature || load > maxLoad || p95 > latencyBudget;
+            boolean under = !(temperature > targetTemperature - 5) && !(load > 0.75 * maxLoad)
+                    && !(p95 > 0.75 * latencyBudget);
+            if (over && step < MAX_FPS.length - 1) {
+                step++;
+                lastStepTime = now;
+            } else if (under && step > 0) {
+                step--;
+                lastStepTime = now;
+            }
+        }
+        publish(temperature, load, p95);
+        publishMemory();
+    }
+
+    /**
+     * Publishes the readings and the current step.
+     */
+    private void publish(double temperature, double load, double p95) {
+        temperatureEntry.setDouble(temperature);
+        loadEntry.setDouble(load);
+        latencyEntry.setDouble(p95);
+        stepEntry.setDouble(step);
+        maxFpsEntry.setDouble(MAX_FPS[step]);
+        streamRateEntry.setDouble(getStreamRate());
+        streamStepEntry.setDouble(getStreamStep());
+    }
+
+    /**
+     * Publishes the resident memory of the process and the part of it outside
+     * the Java heap, or NaN if the resident memory cannot be read.
+     */
+    private void publishMemory() {
+        double residentBytes = readResidentBytes(STATUS_PATH);
+        residentBytesEntry.setDouble(residentBytes);
+        nativeBytesEntry.setDouble(residentBytes - Runtime.getRuntime().totalMemory());
+    }
+
+    /**
+     * Returns the resident set size in a file laid out like
+     * {@code /proc/self/status}, in bytes, or NaN if it cannot be read.
+     */
+    private static double readResidentBytes(Path path) {
+        try {
+            for (String line : Files.readAllLines(path)) {
+                // VmRSS:     123456 kB
+                if (line.startsWith("VmRSS:")) {
+                    return Double.parseDouble(line.substring(6).trim().split("\\s+")[0]) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Not on Linux
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Returns the first whitespace separated number in a file, or NaN if it
+     * cannot be read.
+     */
+    private static double readField(Path path) {
+        try {
+            String text = new String(Files.readAllBytes(path)).trim();
+            return Double.parseDouble(text.split("\\s+")[0]);
+        } catch (IOException | NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
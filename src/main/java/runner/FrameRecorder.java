@@ -0,0 +1,293 @@
+package runner;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.opencv.core.Mat;
+
+import edu.wpi.first.networktables.EntryListenerFlags;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+
+/**
+ * Records raw camera frames into a fixed-size ring of slots in a memory-mapped
+ * file, so that the last few seconds of what the camera saw are always on disk.
+ *
+ * <p>
+ * Recording a frame copies it into the next preallocated slot and returns; the
+ * kernel writes the mapped pages back to disk in its own time. The ring survives
+ * a restart: a file with the same layout is reopened and recording continues
+ * after its newest frame.
+ *
+ * <p>
+ * Setting the {@code freeze} entry of the bound network table to true copies the
+ * last {@code freezeSeconds} of frames to a separate file next to the ring, on
+ * a background thread, and sets the entry back to false. The name of the file is
+ * published in {@code lastFreeze}. Both the ring file and frozen files can be
+ * replayed with a {@link RecordingSource}.
+ *
+ * <p>
+ * The file starts with a header of {@link #FILE_HEADER_SIZE} bytes holding the
+ * magic number, the format version, the number of slots and the capacity of
+ * each slot in bytes. Each slot is a header of {@link #SLOT_HEADER_SIZE} bytes
+ * followed by the image data:
+ *
+ * <pre>
+ * long record number, increasing across restarts, or -1 if the slot is empty
+ * long frame sequence number
+ * long frame capture timestamp, in microseconds
+ * int  image columns
+ * int  image rows
+ * int  OpenCV image type
+ * int  image data length, in bytes
+ * </pre>
+ */
+public class FrameRecorder {
+    static final int MAGIC = 0x4e524752;
+    static final int VERSION = 1;
+    static final int FILE_HEADER_SIZE = 64;
+    static final int SLOT_HEADER_SIZE = 48;
+
+    private static final double DEFAULT_FREEZE_SECONDS = 10.0;
+
+    private final Path path;
+    private final int slotCount;
+    private final int slotCapacity;
+    private final long slotSize;
+    private final MappedByteBuffer buffer;
+    private final ByteBuffer writeBuffer;
+    private final ByteBuffer readBuffer;
+    private final byte[] data;
+
+    /** The record number in each slot, updated last so readers can detect torn slots. */
+    private final AtomicLongArray records;
+    private long nextRecord = 0;
+    private int nextSlot = 0;
+    private long dropped = 0;
+
+    private final ExecutorService freezeExecutor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "FrameRecorder freeze");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Constructs an instance of this class, creating the ring file or reopening
+     * it if it already has the same layout.
+     *
+     * @param path         The path of the ring file.
+     * @param slotCount    The number of frames held by the ring.
+     * @param slotCapacity The largest image that can be recorded, in bytes.
+     * @throws IOException If the file cannot be created or mapped.
+     */
+    public FrameRecorder(Path path, int slotCount, int slotCapacity) throws IOException {
+        this.path = path;
+        this.slotCount = slotCount;
+        this.slotCapacity = slotCapacity;
+        this.slotSize = SLOT_HEADER_SIZE + (long) slotCapacity;
+        long length = FILE_HEADER_SIZE + slotCount * slotSize;
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("ring file of " + length + " bytes is too big to map");
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            boolean reopen = file.length() == length;
+            file.setLength(length);
+            this.buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+            reopen = reopen && buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION
+                    && buffer.getInt(8) == slotCount && buffer.getInt(12) == slotCapacity;
+            if (!reopen) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putInt(8, slotCount);
+                buffer.putInt(12, slotCapacity);
+            }
+
+            this.records = new AtomicLongArray(slotCount);
+            for (int slot = 0; slot < slotCount; slot++) {
+                long record = reopen ? buffer.getLong((int) slotOffset(slot)) : -1;
+                if (!reopen) {
+                    buffer.putLong((int) slotOffset(slot), -1);
+                }
+                records.set(slot, record);
+                if (record >= nextRecord) {
+                    nextRecord = record + 1;
+                    nextSlot = (slot + 1) % slotCount;
+                }
+            }
+        }
+        this.writeBuffer = buffer.duplicate();
+        this.readBuffer = buffer.duplicate();
+        this.data = new byte[slotCapacity];
+    }
+
+    /**
+     * Listens for freeze requests and publishes the freeze settings.
+     *
+     * @param table The table holding the freeze entries.
+     */
+    public void bind(NetworkTable table) {
+        NetworkTableEntry freezeEntry = table.getEntry("freeze");
+        NetworkTableEntry secondsEntry = table.getEntry("freezeSeconds");
+        NetworkTableEntry lastFreezeEntry = table.getEntry("lastFreeze");
+        freezeEntry.setBoolean(false);
+        secondsEntry.setDefaultDouble(DEFAULT_FREEZE_SECONDS);
+        freezeEntry.addListener(event -> {
+            if (event.value.isBoolean() && event.value.getBoolean()) {
+                double seconds = secondsEntry.getDouble(DEFAULT_FREEZE_SECONDS);
+                freezeExecutor.execute(() -> {
+                    try {
+                        lastFreezeEntry.setString(freeze(seconds).toString());
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                    freezeEntry.setBoolean(false);
+                });
+            }
+        }, EntryListenerFlags.kNew | EntryListenerFlags.kUpdate);
+    }
+
+    /**
+     * Copies a frame into the next slot of the ring. Frames larger than a slot
+     * are dropped.
+     *
+     * @param image     The raw camera image.
+     * @param sequence  The sequence number of the frame.
+     * @param timestamp The time at which the frame was captured, in microseconds.
+     */
+    public synchronized void record(Mat image, long sequence, long timestamp) {
+        int length = (int) (image.total() * image.elemSize());
+        if (length > slotCapacity || !image.isContinuous()) {
+            dropped++;
+            return;
+        }
+
+        int slot = nextSlot;
+        int offset = (int) slotOffset(slot);
+        records.set(slot, -1);
+        writeBuffer.putLong(offset, -1);
+        writeBuffer.putLong(offset + 8, sequence);
+        writeBuffer.putLong(offset + 16, timestamp);
+        writeBuffer.putInt(offset + 24, image.cols());
+        writeBuffer.putInt(offset + 28, image.rows());
+        writeBuffer.putInt(offset + 32, image.type());
+        writeBuffer.putInt(offset + 36, length);
+        image.get(0, 0, data);
+        writeBuffer.position(offset + SLOT_HEADER_SIZE);
+        writeBuffer.put(data, 0, length);
+        writeBuffer.putLong(offset, nextRecord);
+        records.set(slot, nextRecord);
+
+        nextRecord++;
+        nextSlot = (slot + 1) % slotCount;
+    }
+
+    /**
+     * Returns the number of frames that were too big to record.
+     *
+     * @return The number of dropped frames.
+     */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Copies the frames recorded in the last few seconds to a new file in the
+     * same directory as the ring, oldest first. Frames overwritten while they are
+     * being copied are left out.
+     *
+     * @param seconds The length of the recording to keep, in seconds.
+     * @return The path of the new file.
+     * @throws IOException If the file cannot be written.
+     */
+    public Path freeze(double seconds) throws IOException {
+        synchronized (readBuffer) {
+            // Walk back from the newest frame until the window or the ring runs out
+            int newestSlot = -1;
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (records.get(slot) >= 0 && (newestSlot < 0 || records.get(slot) > records.get(newestSlot))) {
+                    newestSlot = slot;
+                }
+            }
+            int count = 0;
+            long newestRecord = newestSlot >= 0 ? records.get(newestSlot) : -1;
+            if (newestSlot >= 0) {
+                long newestTime = readBuffer.getLong((int) slotOffset(newestSlot) + 16);
+                for (int slot = newestSlot; count < slotCount; slot = (slot + slotCount - 1) % slotCount) {
+                    long time = readBuffer.getLong((int) slotOffset(slot) + 16);
+                    if (records.get(slot) != newestRecord - count || time > newestTime
+                            || newestTime - time > (long) (seconds * 1e6)) {
+                        break;
+                    }
+                    count++;
+                }
+            }
+
+            String name = path.getFileName().toString().replaceFirst("\\.ring$", "") + "-freeze-"
+                    + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".ring";
+            Path frozen = path.resolveSibling(name);
+            try (RandomAccessFile file = new RandomAccessFile(frozen.toFile(), "rw");
+                    FileChannel channel = file.getChannel()) {
+                file.setLength(0);
+                ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+                header.putInt(0, MAGIC);
+                header.putInt(4, VERSION);
+                header.putInt(8, count);
+                header.putInt(12, slotCapacity);
+                channel.write(header);
+
+                ByteBuffer slotBuffer = ByteBuffer.allocate((int) slotSize);
+                int written = 0;
+                for (int i = count - 1; i >= 0; i--) {
+                    int slot = (newestSlot - i + slotCount) % slotCount;
+                    long record = newestRecord - i;
+                    if (records.get(slot) != record) {
+                        continue;
+                    }
+                    int offset = (int) slotOffset(slot);
+                    ByteBuffer source = readBuffer.duplicate();
+                    source.limit(offset + (int) slotSize).position(offset);
+                    slotBuffer.clear();
+                    slotBuffer.put(source).flip();
+                    if (records.get(slot) != record) {
+                        continue;
+                    }
+                    channel.write(slotBuffer);
+                    written++;
+                }
+
+                // Pad out the slots of frames that were overwritten during the copy
+                for (; written < count; written++) {
+                    slotBuffer.clear();
+                    slotBuffer.putLong(0, -1);
+                    channel.write(slotBuffer);
+                }
+            }
+            return frozen;
+        }
+    }
+
+    /**
+     * Stops freezing and flushes the ring file to disk.
+     */
+    public void close() {
+        freezeExecutor.shutdownNow();
+        buffer.force();
+    }
+
+    /**
+     * Returns the offset of a slot in the file.
+     */
+    private long slotOffset(int slot) {
+        return FILE_HEADER_SIZE + slot * slotSize;
+    }
+}
@@ -0,0 +1,57 @@
+package runner;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import org.opencv.core.Mat;
+
+/**
+ * A source of recorded frames, read one at a time in order.
+ */
+public interface FrameSource extends Closeable {
+    /**
+     * Returns the number of frames in the source.
+     *
+     * @return The number of frames, or -1 if it is not known.
+     */
+    int getFrameCount();
+
+    /**
+     * Positions the source so that the next frame read is the frame at the
+     * specified index.
+     *
+     * @param index The index of the frame, from 0.
+     * @throws IOException If the source cannot be positioned.
+     */
+    void seek(int index) throws IOException;
+
+    /**
+     * Reads the next frame.
+     *
+     * @param image The image into which the frame is read. It is reallocated if
+     *              its size or type does not match the frame.
+     * @return False if there are no more frames.
+     * @throws IOException If the frame cannot be read.
+     */
+    boolean read(Mat image) throws IOException;
+
+    /**
+     * Opens a directory of images, a frame recording or a video file.
+     *
+     * @param path The path of the directory or file. Frame recordings end in
+     *             {@code .ring}.
+     * @return The frame source.
+     * @throws IOException If the path cannot be opened.
+     */
+    static FrameSource open(String path) throws IOException {
+        if (new File(path).isDirectory()) {
+            return new ImageDirectorySource(path);
+        }
+        if (path.endsWith(".ring")) {
+            return new RecordingSource(Paths.get(path));
+        }
+        return new VideoFileSource(path);
+    }
+}
@@ -0,0 +1,327 @@
+package runner;
+
+import java.util.Arrays;
+
+/**
+ * Tracks fuel cells from frame to frame, giving each one an ID that stays the
+ * same for as long as it is tracked.
+ *
+ * <p>
+ * Each track holds a smoothed position, velocity and diameter, its age in
+ * frames and the number of consecutive frames in which it was missed. Every
+ * frame, each track is moved to its predicted position and the tracks are put
+ * into a uniform grid whose cells are the size of the association gate, so each
+ * blob only needs to be compared with the tracks in the nine cells around it.
+ * The resulting pairs within the gate are matched nearest first. Matched tracks
+ * are corrected towards their blob with an alpha-beta filter, unmatched blobs
+ * start new tracks and tracks missed for too many frames are dropped. The cost
+ * of a frame is close to linear in the number of blobs and tracks, and nothing
+ * is allocated once the buffers have grown to the largest number of fuel cells
+ * seen.
+ */
+public class FuelCellTracker {
+    private static final double ALPHA = 0.5;
+    private static final double BETA = 0.2;
+
+    /** Pairs are packed as the distance in the high 32 bits, then the blob and track indices. */
+    private static final int INDEX_BITS = 16;
+    private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+    private static final int MAX_TRACKS = INDEX_MASK;
+
+    private int count = 0;
+    private int nextId = 1;
+    private int[] ids = new int[16];
+    private double[] x = new double[16];
+    private double[] y = new double[16];
+    private double[] velocityX = new double[16];
+    private double[] velocityY = new double[16];
+    private double[] diameter = new double[16];
+    private int[] age = new int[16];
+    private int[] missed = new int[16];
+    private int[] trackBlob = new int[16];
+
+    private int gridColumns = 0;
+    private int gridRows = 0;
+    private int[] cellHeads = new int[0];
+    private int[] nextInCell = new int[16];
+    private int[] blobTrack = new int[16];
+    private long[] pairs = new long[64];
+
+    /**
+     * Associates the blobs found in a frame with the tracks and updates the
+     * tracks.
+     *
+     * @param blobX        The x-coordinates of the blob centers.
+     * @param blobY        The y-coordinates of the blob centers.
+     * @param blobDiameter The diameters of the blobs.
+     * @param blobCount    The number of blobs.
+     * @param width        The width of the frame.
+     * @param height       The height of the frame.
+     * @param gate         The largest distance between a track's predicted
+     *                     position and a blob for them to be associated, in
+     *                     pixels.
+     * @param maxMissed    The number of consecutive frames a track may be missed
+     *                     before it is dropped.
+     */
+    public void update(double[] blobX, double[] blobY, double[] blobDiameter, int blobCount, int width, int height,
+            double gate, int maxMissed) {
+        blobCount = Math.min(blobCount, MAX_TRACKS);
+        gate = Math.max(1, gate);
+        predict();
+        buildGrid(width, height, gate);
+        int pairCount = findPairs(blobX, blobY, blobCount, gate);
+        match(pairCount, blobCount);
+
+        for (int track = 0; track < count; track++) {
+            age[track]++;
+            int blob = trackBlob[track];
+            if (blob < 0) {
+                missed[track]++;
+                continue;
+            }
+            double residualX = blobX[blob] - x[track];
+            double residualY = blobY[blob] - y[track];
+            x[track] += ALPHA * residualX;
+            y[track] += ALPHA * residualY;
+            velocityX[track] += BETA * residualX;
+            velocityY[track] += BETA * residualY;
+            diameter[track] += ALPHA * (blobDiameter[blob] - diameter[track]);
+            missed[track] = 0;
+        }
+
+        dropMissed(maxMissed);
+
+        for (int blob = 0; blob < blobCount; blob++) {
+            if (blobTrack[blob] < 0 && count < MAX_TRACKS) {
+                add(blobX[blob], blobY[blob], blobDiameter[blob]);
+            }
+        }
+    }
+
+    /**
+     * Drops all tracks.
+     */
+    public void reset() {
+        count = 0;
+    }
+
+    /**
+     * Returns the number of tracks.
+     *
+     * @return The number of tracks.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the ID of a track, which stays the same for as long as the fuel
+     * cell is tracked.
+     *
+     * @param track The index of the track, from 0 to {@link #getCount()}.
+     * @return The ID.
+     */
+    public int getId(int track) {
+        return ids[track];
+    }
+
+    /**
+     * Returns the smoothed x-coordinate of a track.
+     *
+     * @param track The index of the track.
+     * @return The x-coordinate of the center, in pixels.
+     */
+    public double getX(int track) {
+        return x[track];
+    }
+
+    /**
+     * Returns the smoothed y-coordinate of a track.
+     *
+     * @param track The index of the track.
+     * @return The y-coordinate of the center, in pixels.
+     */
+    public double getY(int track) {
+        return y[track];
+    }
+
+    /**
+     * Returns the smoothed diameter of a track.
+     *
+     * @param track The index of the track.
+     * @return The diameter, in pixels.
+     */
+    public double getDiameter(int track) {
+        return diameter[track];
+    }
+
+    /**
+     * Returns the age of a track.
+     *
+     * @param track The index of the track.
+     * @return The number of frames since the track started.
+     */
+    public int getAge(int track) {
+        return age[track];
+    }
+
+    /**
+     * Returns the number of consecutive frames in which a track was missed.
+     *
+     * @param track The index of the track.
+     * @return The number of missed frames, or 0 if it was found in the last
+     *         frame.
+     */
+    public int getMissed(int track) {
+        return missed[track];
+    }
+
+    /**
+     * Moves each track to its predicted position.
+     */
+    private void predict() {
+        for (int track = 0; track < count; track++) {
+            x[track] += velocityX[track];
+            y[track] += velocityY[track];
+        }
+    }
+
+    /**
+     * Puts the tracks into the grid cells holding their predicted positions.
+     * Positions outside the frame are put into the nearest edge cell.
+     */
+    private void buildGrid(int width, int height, double gate) {
+        gridColumns = Math.max(1, (int) Math.ceil(width / gate));
+        gridRows = Math.max(1, (int) Math.ceil(height / gate));
+        if (cellHeads.length < gridColumns * gridRows) {
+            cellHeads = new int[gridColumns * gridRows];
+        }
+        Arrays.fill(cellHeads, 0, gridColumns * gridRows, -1);
+        if (nextInCell.length < count) {
+            nextInCell = new int[trackBlob.length];
+        }
+        for (int track = 0; track < count; track++) {
+            int cell = cellRow(y[track], gate) * gridColumns + cellColumn(x[track], gate);
+            nextInCell[track] = cellHeads[cell];
+            cellHeads[cell] = track;
+        }
+    }
+
+    /**
+     * Finds the pairs of blobs and tracks that are within the gate of each other.
+     *
+     * @return The number of pairs found.
+     */
+    private int findPairs(double[] blobX, double[] blobY, int blobCount, double gate) {
+        double gateSquared = gate * gate;
+        int pairCount = 0;
+        for (int blob = 0; blob < blobCount; blob++) {
+            int column = cellColumn(blobX[blob], gate);
+            int row = cellRow(blobY[blob], gate);
+            for (int r = Math.max(0, row - 1); r <= Math.min(gridRows - 1, row + 1); r++) {
+                for (int c = Math.max(0, column - 1); c <= Math.min(gridColumns - 1, column + 1); c++) {
+                    for (int track = cellHeads[r * gridColumns + c]; track >= 0; track = nextInCell[track]) {
+                        double dx = blobX[blob] - x[track];
+                        double dy = blobY[blob] - y[track];
+                        double distanceSquared = dx * dx + dy * dy;
+                        if (distanceSquared > gateSquared) {
+                            continue;
+                        }
+                        if (pairCount == pairs.length) {
+                            pairs = Arrays.copyOf(pairs, 2 * pairs.length);
+                        }
+                        pairs[pairCount++] = (long) Float.floatToIntBits((float) distanceSquared) << 32
+                                | (long) blob << INDEX_BITS | track;
+                    }
+                }
+            }
+        }
+        return pairCount;
+    }
+
+    /**
+     * Matches blobs with tracks, nearest pairs first.
+     */
+    private void match(int pairCount, int blobCount) {
+        if (blobTrack.length < blobCount) {
+            blobTrack = new int[Math.max(blobCount, 2 * blobTrack.length)];
+        }
+        Arrays.fill(blobTrack, 0, blobCount, -1);
+        Arrays.fill(trackBlob, 0, count, -1);
+
+        // Distances are not negative, so their float bits sort in the same order
+        Arrays.sort(pairs, 0, pairCount);
+        for (int i = 0; i < pairCount; i++) {
+            int blob = (int) (pairs[i] >>> INDEX_BITS) & INDEX_MASK;
+            int track = (int) pairs[i] & INDEX_MASK;
+            if (blobTrack[blob] < 0 && trackBlob[track] < 0) {
+                blobTrack[blob] = track;
+                trackBlob[track] = blob;
+            }
+        }
+    }
+
+    /**
+     * Removes the tracks that have been missed for too many frames, keeping the
+     * order of the rest.
+     */
+    private void dropMissed(int maxMissed) {
+        int kept = 0;
+        for (int track = 0; track < count; track++) {
+            if (missed[track] > maxMissed) {
+                continue;
+            }
+            ids[kept] = ids[track];
+            x[kept] = x[track];
+            y[kept] = y[track];
+            velocityX[kept] = velocityX[track];
+            velocityY[kept] = velocityY[track];
+            diameter[kept] = diameter[track];
+            age[kept] = age[track];
+            missed[kept] = missed[track];
+            kept++;
+        }
+        count = kept;
+    }
+
+    /**
+     * Starts a new track at a blob.
+     */
+    private void add(double centerX, double centerY, double blobDiameter) {
+        if (count == ids.length) {
+            int length = 2 * count;
+            ids = Arrays.copyOf(ids, length);
+            x = Arrays.copyOf(x, length);
+            y = Arrays.copyOf(y, length);
+            velocityX = Arrays.copyOf(velocityX, length);
+            velocityY = Arrays.copyOf(velocityY, length);
+            diameter = Arrays.copyOf(diameter, length);
+            age = Arrays.copyOf(age, length);
+            missed = Arrays.copyOf(missed, length);
+            trackBlob = Arrays.copyOf(trackBlob, length);
+        }
+        ids[count] = nextId++;
+        x[count] = centerX;
+        y[count] = centerY;
+        velocityX[count] = 0;
+        velocityY[count] = 0;
+        diameter[count] = blobDiameter;
+        age[count] = 0;
+        missed[count] = 0;
+        count++;
+    }
+
+    /**
+     * Returns the grid column holding an x-coordinate.
+     */
+    private int cellColumn(double x, double gate) {
+        return Math.max(0, Math.min(gridColumns - 1, (int) Math.floor(x / gate)));
+    }
+
+    /**
+     * Returns the grid row holding a y-coordinate.
+     */
+    private int cellRow(double y, double gate) {
+        return Math.max(0, Math.min(gridRows - 1, (int) Math.floor(y / gate)));
+    }
+}
@@ -1,27 +1,70 @@
 package runner;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.List;
 
-import org.opencv.core.KeyPoint;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfKeyPoint;
-import org.opencv.core.Scalar;
-import org.opencv.imgproc.Imgproc;
+import org.opencv.core.Rect;
 
 import edu.wpi.cscore.CvSource;
 import edu.wpi.cscore.VideoSource;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import pipeline.BlobParameters;
 import pipeline.FuelCellTrackingPipeLine;
 import target.FuelCellTarget;
 import utilities.Color;
 
 /**
  * Runs the GRIP pipeline for tracking fuel cells.
+ *
+ * <p>
+ * Fuel cells are tracked from frame to frame with persistent IDs. Only tracks
+ * found in the current image are published, not those still kept while
+ * missed. The results are published for one tracked fuel cell, the closest,
+ * which is kept until another becomes clearly closer so that the published
+ * angle does not jump between fuel cells at about the same distance. The closest tracks are also
+ * published in the {@code tracks} entry of the runner's table as a flat array
+ * of {@value #TRACK_FIELDS} values per track, closest first: ID, distance in
+ * inches, angle in degrees and age in frames.
  */
 public class FuelCellTrackingRunner extends TargetTrackingRunner<FuelCellTrackingPipeLine> {
 
-  private static final String VISION_FUEL_CELL_HAS_TARGET_KEY = "Vision/fuelCell/hasTarget";
+  /** The number of values published for each track. */
+  private static final int TRACK_FIELDS = 4;
+
+  /** The fraction of the closest track's diameter the primary track must keep to stay primary. */
+  private static final double PRIMARY_HOLD_RATIO = 0.8;
+
+  /** The number of floats in each row of a MatOfKeyPoint. */
+  private static final int KEY_POINT_FIELDS = 7;
+
+  // Settings and compatibility view keys in the runner's settings table
+  private String hasTargetKey;
+  private String maxTargetsKey;
+  private String trackGateKey;
+  private String trackMaxMissedKey;
+  private String distanceKey;
+  private String angleKey;
+
+  // Blobs collected for the current image, in full-frame coordinates
+  private float[] keyPoints = new float[16 * KEY_POINT_FIELDS];
+  private double[] blobX = new double[16];
+  private double[] blobY = new double[16];
+  private double[] blobDiameter = new double[16];
+  private int blobCount = 0;
+
+  // Fuel cells tracked across frames, and the ID of the track whose results are published
+  private final FuelCellTracker tracker = new FuelCellTracker();
+  private int primaryId = 0;
+  private NetworkTableEntry tracksEntry;
+  private double[] trackValues = new double[0];
+
+  // Indices of the closest tracks, closest first, and the targets made from them
+  private int[] closest = new int[0];
+  private FuelCellTarget[] ballTargets = new FuelCellTarget[0];
 
   /**
    * Contructs an instance of this class.
@@ -32,39 +75,258 @@ public class FuelCellTrackingRunner extends TargetTrackingRunner<FuelCellTrackin
    */
   public FuelCellTrackingRunner(VideoSource videoSource, CvSource processedVideo) {
     super(videoSource, new FuelCellTrackingPipeLine(), processedVideo);
+    bindSettings();
   }
 
   /**
-   * Processes the outputs of the GRIP pipeline for tracking fuel cells.
+   * Contructs an instance of this class that publishes its results in the
+   * specified table.
+   * 
+   * @param videoSource    The input video source.
+   * @param processedVideo The annotated output video.
+   * @param tableName      The path of the runner's network table.
    */
-  protected void process(FuelCellTrackingPipeLine pipeline, Mat image) {
+  public FuelCellTrackingRunner(VideoSource videoSource, CvSource processedVideo, String tableName) {
+    super(videoSource, new FuelCellTrackingPipeLine(), processedVideo, tableName);
+    bindSettings();
+  }
+
+  /**
+   * Contructs an instance of this class that has no camera or output video.
+   * 
+   * @param resultPublisher Receives the results for each frame.
+   */
+  public FuelCellTrackingRunner(ResultPublisher resultPublisher) {
+    super(new FuelCellTrackingPipeLine(), resultPublisher);
+    bindSettings();
+  }
+
+  /**
+   * Binds the pipeline parameters, including the blob parameters, and sets the
+   * default settings.
+   */
+  private void bindSettings() {
+    String settingsTableName = getSettingsTableName("Vision/fuelCell");
+    hasTargetKey = settingsTableName + "/hasTarget";
+    maxTargetsKey = settingsTableName + "/maxTargets";
+    trackGateKey = settingsTableName + "/trackGate";
+    trackMaxMissedKey = settingsTableName + "/trackMaxMissed";
+    distanceKey = settingsTableName + "/distance";
+    angleKey = settingsTableName + "/angle";
+    getPipeline().bind(settingsTableName);
+    SmartDashboard.setDefaultNumber(maxTargetsKey, 5);
+    SmartDashboard.setDefaultNumber(trackGateKey, 50);
+    SmartDashboard.setDefaultNumber(trackMaxMissedKey, 5);
+    tracksEntry = NetworkTableInstance.getDefault().getTable(getTableName()).getEntry("tracks");
+  }
 
-    // Convert Blobs detected from the GRIP pipeline to BallTarget objects
-    ArrayList<FuelCellTarget> ballTargets = new ArrayList<FuelCellTarget>();
-    MatOfKeyPoint keyPoints = pipeline.findBlobsOutput();
-    for (KeyPoint keyPoint : keyPoints.toArray()) {
-      ballTargets.add(new FuelCellTarget(keyPoint.pt, keyPoint.size));
+  /**
+   * Collects the fuel cells found by the GRIP pipeline into the blob buffers.
+   */
+  @Override
+  protected void collect(FuelCellTrackingPipeLine pipeline, ImageRegion region) {
+    int count = readKeyPoints(pipeline.findBlobsOutput());
+    if (blobX.length < blobCount + count) {
+      int length = Math.max(blobCount + count, 2 * blobX.length);
+      blobX = Arrays.copyOf(blobX, length);
+      blobY = Arrays.copyOf(blobY, length);
+      blobDiameter = Arrays.copyOf(blobDiameter, length);
+    }
+    for (int i = 0; i < count; i++) {
+      int offset = i * KEY_POINT_FIELDS;
+      blobX[blobCount] = region.toFrameX(keyPoints[offset]);
+      blobY[blobCount] = region.toFrameY(keyPoints[offset + 1]);
+      blobDiameter[blobCount] = region.toFrameLength(keyPoints[offset + 2]);
+      blobCount++;
+    }
+  }
+
+  /**
+   * Creates a pipeline that finds fuel cells in a downscaled image, reading the
+   * threshold and other stage parameters of the full resolution pipeline.
+   */
+  @Override
+  protected FuelCellTrackingPipeLine createCoarsePipeline(int levels) {
+    FuelCellTrackingPipeLine coarsePipeline = new FuelCellTrackingPipeLine();
+    coarsePipeline.shareParameters(getPipeline());
+    return coarsePipeline;
+  }
+
+  /**
+   * Copies the current blob parameters to the coarse pipeline, with the minimum
+   * blob area scaled to match.
+   */
+  @Override
+  protected void updateCoarsePipeline(FuelCellTrackingPipeLine coarsePipeline, int levels) {
+    BlobParameters parameters = getPipeline().blobParameters();
+    BlobParameters coarseParameters = coarsePipeline.blobParameters();
+    coarseParameters.setMinArea(parameters.getMinArea() / (1 << (2 * levels)));
+    coarseParameters.setMinCircularity(parameters.getMinCircularity());
+    coarseParameters.setMaxCircularity(parameters.getMaxCircularity());
+    coarseParameters.setMinInertiaRatio(parameters.getMinInertiaRatio());
+    coarseParameters.setMinConvexity(parameters.getMinConvexity());
+  }
+
+  /**
+   * Adds a patch of twice the diameter of each fuel cell found in the
+   * downscaled image.
+   */
+  @Override
+  protected void findCandidates(FuelCellTrackingPipeLine pipeline, ImageRegion region, List<Rect> candidates) {
+    int count = readKeyPoints(pipeline.findBlobsOutput());
+    for (int i = 0; i < count; i++) {
+      int offset = i * KEY_POINT_FIELDS;
+      double size = region.toFrameLength(keyPoints[offset + 2]) + 2 * region.getScale();
+      int x = (int) (region.toFrameX(keyPoints[offset]) - size);
+      int y = (int) (region.toFrameY(keyPoints[offset + 1]) - size);
+      candidates.add(new Rect(x, y, (int) (2 * size), (int) (2 * size)));
     }
+  }
 
-    // Sort list of ball targets in order of closest to furthest
-    Collections.sort(ballTargets, (left, right) -> (int) (left.getDistanceToTarget() - right.getDistanceToTarget()));
+  /**
+   * Processes the fuel cells found in the current image.
+   */
+  @Override
+  protected void process(Mat image) {
+    tracker.update(blobX, blobY, blobDiameter, blobCount, image.cols(), image.rows(),
+        SmartDashboard.getNumber(trackGateKey, 50),
+        (int) SmartDashboard.getNumber(trackMaxMissedKey, 5));
+    int targetCount = selectClosest((int) SmartDashboard.getNumber(maxTargetsKey, 5));
+    int primary = selectPrimary(targetCount);
+    publishTracks(targetCount);
 
-    // Annotate the image by outlining the closest target in one color and rest in another color
-    Scalar targetColor = Color.BLUE;
-    for (FuelCellTarget ballTarget : ballTargets) {
-      Imgproc.circle(image, ballTarget.getCenter(), (int) ballTarget.getDiameterInPixels() / 2, targetColor, 2);
-      targetColor = Color.RED;
+    // Annotate the image by outlining the primary target in one color and rest in another color
+    if (isAnnotationDue()) {
+      for (int i = 0; i < targetCount; i++) {
+        FuelCellTarget ballTarget = ballTargets[i];
+        getOverlay().circle(ballTarget.getCenter(), ballTarget.getDiameterInPixels() / 2,
+            i == primary ? Color.BLUE : Color.RED, 2);
+      }
     }
 
-    // Send Target data to smartdashboard
-    if (!ballTargets.isEmpty()) {
-      SmartDashboard.putBoolean(VISION_FUEL_CELL_HAS_TARGET_KEY, true);
-      FuelCellTarget fuelCellTarget = ballTargets.get(0);
-      SmartDashboard.putNumber("Vision/fuelCell/distance", fuelCellTarget.getDistanceToTarget());
-      SmartDashboard.putNumber("Vision/fuelCell/angle", fuelCellTarget.getAngleToTarget());
+    // Send Target data to the robot, and to smartdashboard at a lower rate
+    if (targetCount > 0) {
+      FuelCellTarget fuelCellTarget = ballTargets[primary];
+      double radius = fuelCellTarget.getDiameterInPixels() / 2;
+      trackTarget(fuelCellTarget.getCenter().x - radius, fuelCellTarget.getCenter().y - radius,
+          fuelCellTarget.getDiameterInPixels(), fuelCellTarget.getDiameterInPixels());
+      publishResult(true, fuelCellTarget.getDistanceToTarget(), fuelCellTarget.getAngleToTarget(), 0);
+      if (isCompatibilityViewDue()) {
+        SmartDashboard.putBoolean(hasTargetKey, true);
+        SmartDashboard.putNumber(distanceKey, fuelCellTarget.getDistanceToTarget());
+        SmartDashboard.putNumber(angleKey, fuelCellTarget.getAngleToTarget());
+      }
     } else {
-      SmartDashboard.putBoolean(VISION_FUEL_CELL_HAS_TARGET_KEY, false);
+      publishResult(false, 0, 0, 0);
+      if (isCompatibilityViewDue()) {
+        SmartDashboard.putBoolean(hasTargetKey, false);
+      }
+    }
+
+    blobCount = 0;
+  }
+
+  /**
+   * Reads the keypoints into the reusable keypoint buffer.
+   * 
+   * @param matOfKeyPoint The keypoints found by the GRIP pipeline.
+   * @return The number of keypoints read.
+   */
+  private int readKeyPoints(MatOfKeyPoint matOfKeyPoint) {
+    int count = (int) matOfKeyPoint.total();
+    if (count == 0) {
+      return 0;
+    }
+    if (keyPoints.length < count * KEY_POINT_FIELDS) {
+      keyPoints = new float[Math.max(count, 2 * keyPoints.length / KEY_POINT_FIELDS) * KEY_POINT_FIELDS];
+    }
+    matOfKeyPoint.get(0, 0, keyPoints);
+    return count;
+  }
+
+  /**
+   * Fills the target pool with the closest of the tracked fuel cells found in
+   * the current image, closest first. Tracks coasting on their velocity after
+   * being missed are not selected. The distance to a fuel cell falls as its
+   * diameter grows, so this is a partial selection of the tracks with the
+   * largest diameters.
+   * 
+   * @param maxTargets The maximum number of targets to select.
+   * @return The number of targets selected.
+   */
+  private int selectClosest(int maxTargets) {
+    maxTargets = Math.max(1, maxTargets);
+    if (ballTargets.length != maxTargets) {
+      closest = new int[maxTargets];
+      ballTargets = new FuelCellTarget[maxTargets];
+      for (int i = 0; i < maxTargets; i++) {
+        ballTargets[i] = new FuelCellTarget();
+      }
+    }
+
+    // Insert each track into the sorted list of the closest tracks seen so far
+    int selected = 0;
+    for (int track = 0; track < tracker.getCount(); track++) {
+      if (tracker.getMissed(track) != 0) {
+        continue;
+      }
+      double diameter = tracker.getDiameter(track);
+      if (selected == maxTargets && diameter <= tracker.getDiameter(closest[selected - 1])) {
+        continue;
+      }
+      int i = selected < maxTargets ? selected++ : selected - 1;
+      while (i > 0 && tracker.getDiameter(closest[i - 1]) < diameter) {
+        closest[i] = closest[i - 1];
+        i--;
+      }
+      closest[i] = track;
+    }
+
+    for (int i = 0; i < selected; i++) {
+      int track = closest[i];
+      ballTargets[i].set(tracker.getX(track), tracker.getY(track), tracker.getDiameter(track));
+    }
+    return selected;
+  }
+
+  /**
+   * Chooses the target whose results are published. The previous primary track
+   * is kept while it is among the selected targets and not much further away
+   * than the closest; otherwise the closest becomes the primary track.
+   * 
+   * @param targetCount The number of selected targets.
+   * @return The index of the primary target, or 0 if there are none.
+   */
+  private int selectPrimary(int targetCount) {
+    int primary = 0;
+    for (int i = 1; i < targetCount; i++) {
+      if (tracker.getId(closest[i]) == primaryId && ballTargets[i].getDiameterInPixels()
+          >= PRIMARY_HOLD_RATIO * ballTargets[0].getDiameterInPixels()) {
+        primary = i;
+        break;
+      }
+    }
+    primaryId = targetCount > 0 ? tracker.getId(closest[primary]) : 0;
+    return primary;
+  }
+
+  /**
+   * Publishes the ID, distance, angle and age of each selected target.
+   * 
+   * @param targetCount The number of selected targets.
+   */
+  private void publishTracks(int targetCount) {
+    if (trackValues.length != targetCount * TRACK_FIELDS) {
+      trackValues = new double[targetCount * TRACK_FIELDS];
+    }
+    for (int i = 0; i < targetCount; i++) {
+      int offset = i * TRACK_FIELDS;
+      trackValues[offset] = tracker.getId(closest[i]);
+      trackValues[offset + 1] = ballTargets[i].getDistanceToTarget();
+      trackValues[offset + 2] = ballTargets[i].getAngleToTarget();
+      trackValues[offset + 3] = tracker.getAge(closest[i]);
     }
+    tracksEntry.setDoubleArray(trackValues);
   }
 
   @Override
@@ -74,6 +336,10 @@ public class FuelCellTrackingRunner extends TargetTrackingRunner<FuelCellTrackin
 
   @Override
   public void stop() {
-    SmartDashboard.putBoolean(VISION_FUEL_CELL_HAS_TARGET_KEY, false);
+    tracker.reset();
+    primaryId = 0;
+    tracksEntry.setDoubleArray(new double[0]);
+    publishResult(false, 0, 0, 0);
+    SmartDashboard.putBoolean(hasTargetKey, false);
   }
-}
\ No newline at end of file
+}
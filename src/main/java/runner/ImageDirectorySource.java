@@ -0,0 +1,60 @@
+package runner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+/**
+ * Reads the images in a directory as frames, in file name order.
+ */
+public class ImageDirectorySource implements FrameSource {
+    private final File[] files;
+    private int index = 0;
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param directory The path of the directory.
+     * @throws IOException If the directory cannot be listed.
+     */
+    public ImageDirectorySource(String directory) throws IOException {
+        this.files = new File(directory).listFiles(
+                (dir, name) -> name.toLowerCase().matches(".*\\.(jpe?g|png|bmp)"));
+        if (this.files == null) {
+            throw new IOException("could not list '" + directory + "'");
+        }
+        Arrays.sort(this.files);
+    }
+
+    @Override
+    public int getFrameCount() {
+        return files.length;
+    }
+
+    @Override
+    public void seek(int index) {
+        this.index = index;
+    }
+
+    @Override
+    public boolean read(Mat image) throws IOException {
+        if (index >= files.length) {
+            return false;
+        }
+        File file = files[index++];
+        Mat decoded = Imgcodecs.imread(file.getPath());
+        if (decoded.empty()) {
+            throw new IOException("could not read '" + file + "'");
+        }
+        decoded.copyTo(image);
+        decoded.release();
+        return true;
+    }
+
+    @Override
+    public void close() {
+    }
+}
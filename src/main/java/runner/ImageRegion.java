@@ -0,0 +1,92 @@
+package runner;
+
+/**
+ * Maps coordinates in an image given to a GRIP pipeline back to the full camera
+ * frame the image was taken from.
+ *
+ * <p>
+ * The pipeline input may be a window cropped from the frame, a downscaled copy
+ * of the frame, or both.
+ */
+public class ImageRegion {
+    private double offsetX;
+    private double offsetY;
+    private double scale = 1.0;
+
+    /**
+     * Sets the region to cover the full frame at full resolution.
+     */
+    public void setFullFrame() {
+        set(0, 0, 1.0);
+    }
+
+    /**
+     * Sets the mapping from pipeline input coordinates to frame coordinates.
+     *
+     * @param offsetX The x-coordinate in the frame of the input's left edge.
+     * @param offsetY The y-coordinate in the frame of the input's top edge.
+     * @param scale   The number of frame pixels per input pixel.
+     */
+    public void set(double offsetX, double offsetY, double scale) {
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        this.scale = scale;
+    }
+
+    /**
+     * Converts an x-coordinate in the pipeline input to the frame.
+     *
+     * @param x The x-coordinate in the pipeline input.
+     * @return The x-coordinate in the frame.
+     */
+    public double toFrameX(double x) {
+        return offsetX + x * scale;
+    }
+
+    /**
+     * Converts a y-coordinate in the pipeline input to the frame.
+     *
+     * @param y The y-coordinate in the pipeline input.
+     * @return The y-coordinate in the frame.
+     */
+    public double toFrameY(double y) {
+        return offsetY + y * scale;
+    }
+
+    /**
+     * Converts a length in the pipeline input to the frame.
+     *
+     * @param length The length in the pipeline input, in pixels.
+     * @return The length in the frame, in pixels.
+     */
+    public double toFrameLength(double length) {
+        return length * scale;
+    }
+
+    /**
+     * Returns the x-coordinate in the frame of the input's left edge.
+     *
+     * @return The x offset, in frame pixels.
+     */
+    public double getOffsetX() {
+        return offsetX;
+    }
+
+    /**
+     * Returns the y-coordinate in the frame of the input's top edge.
+     *
+     * @return The y offset, in frame pixels.
+     */
+    public double getOffsetY() {
+        return offsetY;
+    }
+
+    /**
+     * Returns the number of frame pixels per input pixel.
+     *
+     * @return The scale.
+     */
+    public double getScale() {
+        return scale;
+    }
+}
@@ -1,69 +1,222 @@
 package runner;
 
+import java.util.List;
+
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfPoint;
 import org.opencv.core.Point;
 import org.opencv.core.Rect;
-import org.opencv.imgproc.Imgproc;
 
 import edu.wpi.cscore.CvSource;
 import edu.wpi.cscore.VideoSource;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import pipeline.ContourParameters;
 import pipeline.LoadingStationPipeline;
 import target.LoadingStationTarget;
 import utilities.Color;
 
 public class LoadingStationRunner extends TargetTrackingRunner<LoadingStationPipeline> {
 
-    private static final String VISION_LOADING_STATION_HAS_TARGET_KEY = "Vision/LoadingStation/HasTarget";
+    // Compatibility view keys in the runner's settings table
+    private String hasTargetKey;
+    private String heightKey;
+    private String distanceKey;
+    private String angleKey;
+    private String skewKey;
+    private String skewDegreesKey;
+
+    private LoadingStationTarget target = new LoadingStationTarget();
+    private LoadingStationTarget candidate = new LoadingStationTarget();
+    private boolean hasTarget;
+    private double targetScore;
+    private NetworkTable rejectedTable;
+    private int[] points = new int[256];
+    private final Point centerBottom = new Point();
+    private final Point centerTop = new Point();
 
     public LoadingStationRunner(VideoSource videoSource, CvSource processedVideo) {
         super(videoSource, new LoadingStationPipeline(), processedVideo);
+        bindSettings();
+    }
+
+    /**
+     * Contructs an instance of this class that publishes its results in the
+     * specified table.
+     * 
+     * @param videoSource    The input video source.
+     * @param processedVideo The annotated output video.
+     * @param tableName      The path of the runner's network table.
+     */
+    public LoadingStationRunner(VideoSource videoSource, CvSource processedVideo, String tableName) {
+        super(videoSource, new LoadingStationPipeline(), processedVideo, tableName);
+        bindSettings();
+    }
+
+    /**
+     * Contructs an instance of this class that has no camera or output video.
+     * 
+     * @param resultPublisher Receives the results for each frame.
+     */
+    public LoadingStationRunner(ResultPublisher resultPublisher) {
+        super(new LoadingStationPipeline(), resultPublisher);
+        bindSettings();
+    }
+
+    /**
+     * Binds the pipeline parameters, including the contour filter parameters, and
+     * builds the keys in the runner's settings table.
+     */
+    private void bindSettings() {
+        String settingsTableName = getSettingsTableName("Vision/LoadingStation");
+        hasTargetKey = settingsTableName + "/HasTarget";
+        heightKey = settingsTableName + "/Height";
+        distanceKey = settingsTableName + "/DistanceInches";
+        angleKey = settingsTableName + "/Angle";
+        skewKey = settingsTableName + "/Skew";
+        skewDegreesKey = settingsTableName + "/SkewDegrees";
+        getPipeline().bind(settingsTableName);
+        rejectedTable = NetworkTableInstance.getDefault().getTable(settingsTableName + "/contour/rejected");
     }
 
+    /**
+     * Keeps the filtered contour with the highest score, across all runs of the
+     * pipeline on the current image. The geometry is computed only for that
+     * contour, in a single pass over its vertices without allocating.
+     */
     @Override
-    protected void process(LoadingStationPipeline pipeline, Mat image) {
-        LoadingStationTarget target = null;
-        double areaMax = 0;
-        MatOfPoint biggestMat = null;
-        for (MatOfPoint mat : pipeline.findContoursOutput()) {
-            Rect boundingRect = Imgproc.boundingRect(mat);
-            //double ratio = boundingRect.height / boundingRect.width;
-            //if (ratio < 11.0/3.5 && ratio > 11.0/8.0) {
-                if (boundingRect.area() > areaMax) {
-                    biggestMat = mat;
-                }
-            //}
+    protected void collect(LoadingStationPipeline pipeline, ImageRegion region) {
+        int best = bestContour(pipeline);
+        if (best >= 0 && (!hasTarget || pipeline.contourFilter().getScore(best) > targetScore)) {
+            computeGeometry(pipeline.filterContoursOutput().get(best), region.getOffsetX(), region.getOffsetY());
+            LoadingStationTarget highest = candidate;
+            candidate = target;
+            target = highest;
+            targetScore = pipeline.contourFilter().getScore(best);
+            hasTarget = true;
+        }
+    }
+
+    /**
+     * Adds a patch around the highest scoring contour found in the downscaled
+     * image.
+     */
+    @Override
+    protected void findCandidates(LoadingStationPipeline pipeline, ImageRegion region, List<Rect> candidates) {
+        int best = bestContour(pipeline);
+        if (best >= 0) {
+            computeGeometry(pipeline.filterContoursOutput().get(best), 0, 0);
+            double margin = Math.max(candidate.boundsWidth, candidate.boundsHeight) / 4.0 + 2;
+            candidates.add(new Rect((int) region.toFrameX(candidate.boundsX - margin),
+                    (int) region.toFrameY(candidate.boundsY - margin),
+                    (int) region.toFrameLength(candidate.boundsWidth + 2 * margin),
+                    (int) region.toFrameLength(candidate.boundsHeight + 2 * margin)));
+        }
+    }
+
+    /**
+     * Returns the index of the filtered contour with the highest score, or -1 if
+     * no contour passed the filter.
+     */
+    private static int bestContour(LoadingStationPipeline pipeline) {
+        int best = -1;
+        for (int i = 0; i < pipeline.filterContoursOutput().size(); i++) {
+            if (best < 0 || pipeline.contourFilter().getScore(i) > pipeline.contourFilter().getScore(best)) {
+                best = i;
+            }
         }
+        return best;
+    }
 
-        if (biggestMat != null) {
-            target = new LoadingStationTarget(biggestMat);
+    /**
+     * Creates a pipeline that finds the target in a downscaled image, reading the
+     * threshold and other stage parameters of the full resolution pipeline.
+     */
+    @Override
+    protected LoadingStationPipeline createCoarsePipeline(int levels) {
+        LoadingStationPipeline coarsePipeline = new LoadingStationPipeline();
+        coarsePipeline.shareParameters(getPipeline());
+        return coarsePipeline;
+    }
 
-            Point centerBottom = new Point((target.bottomRight.x + target.bottomLeft.x) / 2.0,
-                    (target.bottomRight.y + target.bottomLeft.y) / 2.0);
-            Point centerTop = new Point((target.upperRight.x + target.upperLeft.x) / 2.0,
-                    (target.upperRight.y + target.upperLeft.y) / 2.0);
+    /**
+     * Copies the current contour filter parameters to the coarse pipeline, with
+     * the pixel and area limits scaled to match.
+     */
+    @Override
+    protected void updateCoarsePipeline(LoadingStationPipeline coarsePipeline, int levels) {
+        ContourParameters parameters = getPipeline().contourFilter().getParameters();
+        ContourParameters coarseParameters = coarsePipeline.contourFilter().getParameters();
+        double scale = 1 << (2 * levels);
+        coarseParameters.setMinNonZero(parameters.getMinNonZero() / scale);
+        coarseParameters.setMinPoints(parameters.getMinPoints());
+        coarseParameters.setMinArea(parameters.getMinArea() / scale);
+        coarseParameters.setMinAspectRatio(parameters.getMinAspectRatio());
+        coarseParameters.setMaxAspectRatio(parameters.getMaxAspectRatio());
+        coarseParameters.setMinConvexity(parameters.getMinConvexity());
+        coarseParameters.setMinSolidity(parameters.getMinSolidity());
+    }
+
+    @Override
+    protected void process(Mat image) {
+        LoadingStationTarget target = hasTarget ? this.target : null;
+        if (target != null) {
+            trackTarget(target.boundsX, target.boundsY, target.boundsWidth, target.boundsHeight);
+        }
+
+        if (target != null && isAnnotationDue()) {
+            centerBottom.x = (target.bottomRight.x + target.bottomLeft.x) / 2.0;
+            centerBottom.y = (target.bottomRight.y + target.bottomLeft.y) / 2.0;
+            centerTop.x = (target.upperRight.x + target.upperLeft.x) / 2.0;
+            centerTop.y = (target.upperRight.y + target.upperLeft.y) / 2.0;
 
             // Outline the loading station target in blue
-            Imgproc.line(image, target.upperLeft, target.upperRight, Color.BLUE, 2);
-            Imgproc.line(image, target.upperRight, target.bottomRight, Color.BLUE, 2);
-            Imgproc.line(image, target.bottomRight, target.bottomLeft, Color.BLUE, 2);
-            Imgproc.line(image, target.bottomLeft, target.upperLeft, Color.BLUE, 2);
+            Overlay overlay = getOverlay();
+            overlay.line(target.upperLeft, target.upperRight, Color.BLUE, 2);
+            overlay.line(target.upperRight, target.bottomRight, Color.BLUE, 2);
+            overlay.line(target.bottomRight, target.bottomLeft, Color.BLUE, 2);
+            overlay.line(target.bottomLeft, target.upperLeft, Color.BLUE, 2);
 
             // Draw the center line in red
-            Imgproc.line(image, centerBottom, centerTop, Color.RED, 1);
+            overlay.line(centerBottom, centerTop, Color.RED, 1);
         }
 
+        // Send Target data to the robot, and to smartdashboard at a lower rate
         if (target != null) {
-            SmartDashboard.putBoolean(VISION_LOADING_STATION_HAS_TARGET_KEY, true);
-            SmartDashboard.putNumber("Vision/LoadingStation/Height", target.height);
-            SmartDashboard.putNumber("Vision/LoadingStation/DistanceInches", target.distance);
-            SmartDashboard.putNumber("Vision/LoadingStation/Angle", target.angleX);
-            SmartDashboard.putNumber("Vision/LoadingStation/Skew", target.skew);
-            SmartDashboard.putNumber("Vision/LoadingStation/SkewDegrees", target.skewDegrees);
+            publishResult(true, target.distance, target.angleX, target.skew);
+            if (isCompatibilityViewDue()) {
+                SmartDashboard.putBoolean(hasTargetKey, true);
+                SmartDashboard.putNumber(heightKey, target.height);
+                SmartDashboard.putNumber(distanceKey, target.distance);
+                SmartDashboard.putNumber(angleKey, target.angleX);
+                SmartDashboard.putNumber(skewKey, target.skew);
+                SmartDashboard.putNumber(skewDegreesKey, target.skewDegrees);
+            }
         } else {
-            SmartDashboard.putBoolean(VISION_LOADING_STATION_HAS_TARGET_KEY, false);
+            publishResult(false, 0, 0, 0);
+            if (isCompatibilityViewDue()) {
+                SmartDashboard.putBoolean(hasTargetKey, false);
+            }
+        }
+        if (isCompatibilityViewDue()) {
+            getPipeline().contourFilter().publish(rejectedTable);
+        }
+
+        hasTarget = false;
+    }
+
+    /**
+     * Reads the vertices of a contour into the reusable buffer and computes the
+     * candidate target from them.
+     */
+    private void computeGeometry(MatOfPoint mat, double offsetX, double offsetY) {
+        int count = (int) mat.total();
+        if (points.length < 2 * count) {
+            points = new int[Math.max(2 * count, 2 * points.length)];
         }
+        mat.get(0, 0, points);
+        candidate.set(points, count, offsetX, offsetY);
     }
 
     @Override
@@ -73,7 +226,8 @@ public class LoadingStationRunner extends TargetTrackingRunner<LoadingStationPip
 
     @Override
     public void stop() {
-        SmartDashboard.putBoolean(VISION_LOADING_STATION_HAS_TARGET_KEY, false);
+        publishResult(false, 0, 0, 0);
+        SmartDashboard.putBoolean(hasTargetKey, false);
     }
 
 }
\ No newline at end of file
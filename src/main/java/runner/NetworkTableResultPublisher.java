@@ -0,0 +1,46 @@
+package runner;
+
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+
+/**
+ * Publishes the results of a runner for one frame as a single network table
+ * update, so that the robot never reads a mix of values from different frames.
+ *
+ * <p>
+ * The results entry is a double array laid out as described by
+ * {@link ResultPublisher}. The update is flushed to the network immediately
+ * rather than waiting for the periodic network table update.
+ */
+public class NetworkTableResultPublisher implements ResultPublisher {
+    private final NetworkTableEntry resultsEntry;
+    private final double[] values = new double[SIZE];
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param table The table in which to publish the results.
+     */
+    public NetworkTableResultPublisher(NetworkTable table) {
+        this.resultsEntry = table.getEntry("results");
+    }
+
+    /**
+     * Publishes the results for a frame and flushes them to the network.
+     */
+    @Override
+    public void publish(boolean hasTarget, double distance, double angle, double skew, long sequence,
+            double timestamp, double predictedDistance, double predictedAngle, double predictionTimestamp) {
+        values[HAS_TARGET] = hasTarget ? 1.0 : 0.0;
+        values[DISTANCE] = distance;
+        values[ANGLE] = angle;
+        values[SKEW] = skew;
+        values[SEQUENCE] = sequence;
+        values[TIMESTAMP] = timestamp;
+        values[PREDICTED_DISTANCE] = predictedDistance;
+        values[PREDICTED_ANGLE] = predictedAngle;
+        values[PREDICTION_TIMESTAMP] = predictionTimestamp;
+        resultsEntry.setDoubleArray(values);
+        resultsEntry.getInstance().flush();
+    }
+}
@@ -0,0 +1,110 @@
+package runner;
+
+import java.util.Arrays;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * A display list of annotations, recorded in frame coordinates while a frame is
+ * post processed and drawn later onto the downscaled output image.
+ *
+ * <p>
+ * Recording an annotation only stores its coordinates, so the source frame is
+ * never modified and the drawing is done on the pixels of the output image
+ * rather than the full-resolution frame. Line thicknesses are in output pixels
+ * and are not scaled. Recording does not allocate once the list has grown to
+ * the largest number of annotations drawn on a frame.
+ */
+public class Overlay {
+    private static final int LINE = 0;
+    private static final int CIRCLE = 1;
+
+    /** The number of coordinates stored for each annotation. */
+    private static final int FIELDS = 4;
+
+    private int count = 0;
+    private int[] kinds = new int[16];
+    private double[] coordinates = new double[16 * FIELDS];
+    private Scalar[] colors = new Scalar[16];
+    private int[] thicknesses = new int[16];
+    private final Point from = new Point();
+    private final Point to = new Point();
+
+    /**
+     * Removes all annotations.
+     */
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Adds a line.
+     *
+     * @param from      The start of the line, in frame coordinates.
+     * @param to        The end of the line, in frame coordinates.
+     * @param color     The color of the line.
+     * @param thickness The thickness of the line, in output pixels.
+     */
+    public void line(Point from, Point to, Scalar color, int thickness) {
+        add(LINE, from.x, from.y, to.x, to.y, color, thickness);
+    }
+
+    /**
+     * Adds a circle.
+     *
+     * @param center    The center of the circle, in frame coordinates.
+     * @param radius    The radius of the circle, in frame pixels.
+     * @param color     The color of the circle.
+     * @param thickness The thickness of the outline, in output pixels.
+     */
+    public void circle(Point center, double radius, Scalar color, int thickness) {
+        add(CIRCLE, center.x, center.y, radius, 0, color, thickness);
+    }
+
+    /**
+     * Draws the annotations onto an image that is a scaled copy of the frame.
+     *
+     * @param image  The output image.
+     * @param scaleX The width of the output image divided by the frame width.
+     * @param scaleY The height of the output image divided by the frame height.
+     */
+    public void draw(Mat image, double scaleX, double scaleY) {
+        for (int i = 0; i < count; i++) {
+            int offset = i * FIELDS;
+            from.x = coordinates[offset] * scaleX;
+            from.y = coordinates[offset + 1] * scaleY;
+            if (kinds[i] == LINE) {
+                to.x = coordinates[offset + 2] * scaleX;
+                to.y = coordinates[offset + 3] * scaleY;
+                Imgproc.line(image, from, to, colors[i], thicknesses[i]);
+            } else {
+                int radius = (int) Math.round(coordinates[offset + 2] * scaleX);
+                Imgproc.circle(image, from, radius, colors[i], thicknesses[i]);
+            }
+        }
+    }
+
+    /**
+     * Appends an annotation, growing the list if it is full.
+     */
+    private void add(int kind, double a, double b, double c, double d, Scalar color, int thickness) {
+        if (count == kinds.length) {
+            kinds = Arrays.copyOf(kinds, 2 * count);
+            coordinates = Arrays.copyOf(coordinates, 2 * count * FIELDS);
+            colors = Arrays.copyOf(colors, 2 * count);
+            thicknesses = Arrays.copyOf(thicknesses, 2 * count);
+        }
+        int offset = count * FIELDS;
+        kinds[count] = kind;
+        coordinates[offset] = a;
+        coordinates[offset + 1] = b;
+        coordinates[offset + 2] = c;
+        coordinates[offset + 3] = d;
+        colors[count] = color;
+        thicknesses[count] = thickness;
+        count++;
+    }
+}
@@ -0,0 +1,106 @@
+package runner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.opencv.core.Mat;
+
+/**
+ * Reads the frames recorded by a {@link FrameRecorder}, oldest first, from
+ * either its ring file or a frozen copy.
+ */
+public class RecordingSource implements FrameSource {
+    private final FileChannel channel;
+    private final long slotSize;
+    private final long[] offsets;
+    private final ByteBuffer slotHeader = ByteBuffer.allocate(FrameRecorder.SLOT_HEADER_SIZE);
+    private byte[] data = new byte[0];
+    private int index = 0;
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param path The path of the recording.
+     * @throws IOException If the file cannot be read or is not a recording.
+     */
+    public RecordingSource(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(FrameRecorder.FILE_HEADER_SIZE);
+            channel.read(header, 0);
+            if (header.getInt(0) != FrameRecorder.MAGIC || header.getInt(4) != FrameRecorder.VERSION) {
+                throw new IOException("'" + path + "' is not a frame recording");
+            }
+            int slotCount = header.getInt(8);
+            this.slotSize = FrameRecorder.SLOT_HEADER_SIZE + (long) header.getInt(12);
+
+            // Order the filled slots by record number
+            List<long[]> slots = new ArrayList<>();
+            ByteBuffer record = ByteBuffer.allocate(Long.BYTES);
+            for (int slot = 0; slot < slotCount; slot++) {
+                long offset = FrameRecorder.FILE_HEADER_SIZE + slot * slotSize;
+                record.clear();
+                channel.read(record, offset);
+                if (record.getLong(0) >= 0) {
+                    slots.add(new long[] { record.getLong(0), offset });
+                }
+            }
+            slots.sort(Comparator.comparingLong(slot -> slot[0]));
+            this.offsets = slots.stream().mapToLong(slot -> slot[1]).toArray();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int getFrameCount() {
+        return offsets.length;
+    }
+
+    @Override
+    public void seek(int index) {
+        this.index = index;
+    }
+
+    @Override
+    public boolean read(Mat image) throws IOException {
+        if (index >= offsets.length) {
+            return false;
+        }
+        long offset = offsets[index++];
+        slotHeader.clear();
+        channel.read(slotHeader, offset);
+        int cols = slotHeader.getInt(24);
+        int rows = slotHeader.getInt(28);
+        int type = slotHeader.getInt(32);
+        int length = slotHeader.getInt(36);
+        if (length < 0 || length > slotSize - FrameRecorder.SLOT_HEADER_SIZE) {
+            throw new IOException("corrupt frame at offset " + offset);
+        }
+
+        if (data.length < length) {
+            data = new byte[length];
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + FrameRecorder.SLOT_HEADER_SIZE + buffer.position()) < 0) {
+                throw new IOException("truncated frame at offset " + offset);
+            }
+        }
+        image.create(rows, cols, type);
+        image.put(0, 0, data);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,130 @@
+package runner;
+
+import org.opencv.core.Rect;
+
+/**
+ * Tracks the region of the frame around a locked target so that the next frame
+ * only needs to be searched near where the target was last seen.
+ *
+ * <p>
+ * The search window is the target's bounds expanded by a margin, shifted by the
+ * target's motion since the previous frame and widened by the speed of that
+ * motion. Each frame the target is missed the window grows, and after too many
+ * missed frames the lock is dropped and the full frame is searched again.
+ */
+public class RegionTracker {
+    private static final double MARGIN = 1.0;
+    private static final double VELOCITY_GAIN = 2.0;
+    private static final double MISS_GROWTH = 1.5;
+    private static final int MIN_WINDOW_SIZE = 32;
+
+    private final Rect window = new Rect();
+    private int maxMissedFrames = 5;
+    private boolean locked = false;
+    private int missedFrames = 0;
+    private double centerX;
+    private double centerY;
+    private double velocityX;
+    private double velocityY;
+    private double halfWidth;
+    private double halfHeight;
+
+    /**
+     * Sets the number of consecutive missed frames after which the full frame is
+     * searched.
+     *
+     * @param maxMissedFrames The number of missed frames.
+     */
+    public void setMaxMissedFrames(int maxMissedFrames) {
+        this.maxMissedFrames = maxMissedFrames;
+    }
+
+    /**
+     * Returns the window of the frame to search.
+     *
+     * @param frameWidth  The width of the frame.
+     * @param frameHeight The height of the frame.
+     * @return The window to search, or null if the full frame is to be searched.
+     *         The returned rectangle is reused by the next call.
+     */
+    public Rect getWindow(int frameWidth, int frameHeight) {
+        if (!locked) {
+            return null;
+        }
+
+        double growth = Math.pow(MISS_GROWTH, missedFrames);
+        double predictedX = centerX + velocityX * (missedFrames + 1);
+        double predictedY = centerY + velocityY * (missedFrames + 1);
+        double windowHalfWidth = Math.max(MIN_WINDOW_SIZE / 2,
+                (halfWidth * (1 + 2 * MARGIN) + Math.abs(velocityX) * VELOCITY_GAIN) * growth);
+        double windowHalfHeight = Math.max(MIN_WINDOW_SIZE / 2,
+                (halfHeight * (1 + 2 * MARGIN) + Math.abs(velocityY) * VELOCITY_GAIN) * growth);
+
+        int left = (int) Math.max(0, Math.floor(predictedX - windowHalfWidth));
+        int top = (int) Math.max(0, Math.floor(predictedY - windowHalfHeight));
+        int right = (int) Math.min(frameWidth, Math.ceil(predictedX + windowHalfWidth));
+        int bottom = (int) Math.min(frameHeight, Math.ceil(predictedY + windowHalfHeight));
+        if (right - left < MIN_WINDOW_SIZE || bottom - top < MIN_WINDOW_SIZE
+                || (right - left >= frameWidth && bottom - top >= frameHeight)) {
+            return null;
+        }
+
+        window.x = left;
+        window.y = top;
+        window.width = right - left;
+        window.height = bottom - top;
+        return window;
+    }
+
+    /**
+     * Records that the target was found in the current frame.
+     *
+     * @param x      The x-coordinate of the target's bounds in the frame.
+     * @param y      The y-coordinate of the target's bounds in the frame.
+     * @param width  The width of the target's bounds.
+     * @param height The height of the target's bounds.
+     */
+    public void found(double x, double y, double width, double height) {
+        double newCenterX = x + width / 2.0;
+        double newCenterY = y + height / 2.0;
+        if (locked) {
+            velocityX = (newCenterX - centerX) / (missedFrames + 1);
+            velocityY = (newCenterY - centerY) / (missedFrames + 1);
+        } else {
+            velocityX = 0;
+            velocityY = 0;
+        }
+        centerX = newCenterX;
+        centerY = newCenterY;
+        halfWidth = width / 2.0;
+        halfHeight = height / 2.0;
+        missedFrames = 0;
+        locked = true;
+    }
+
+    /**
+     * Records that the target was not found in the current frame.
+     */
+    public void missed() {
+        if (locked && ++missedFrames > maxMissedFrames) {
+            reset();
+        }
+    }
+
+    /**
+     * Drops the lock so that the next frame searches the full frame.
+     */
+    public void reset() {
+        locked = false;
+        missedFrames = 0;
+    }
+
+    /**
+     * Returns whether a target is locked.
+     *
+     * @return True if the search is limited to a window around the target.
+     */
+    public boolean isLocked() {
+        return locked;
+    }
+}
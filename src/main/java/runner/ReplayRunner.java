@@ -0,0 +1,355 @@
+package runner;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.opencv.core.CvType;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+
+import edu.wpi.cscore.CameraServerCvJNI;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import pipeline.FrameCache;
+import utilities.Convert;
+
+/**
+ * Runs recorded frames through the runners as fast as possible, without a
+ * camera, output video or network tables connection, and reports what they
+ * detect and how long they take.
+ *
+ * <p>
+ * A recording with a known number of frames is split into chunks that are
+ * replayed in parallel, each by its own set of runners. Region tracking and
+ * pyramid detection therefore start afresh at the beginning of each chunk.
+ *
+ * <p>
+ * Runner settings are read from the local network tables instance, which is
+ * never connected, so they have their default values.
+ */
+public class ReplayRunner {
+    /** Recordings are not split into chunks smaller than this. */
+    private static final int MIN_CHUNK_FRAMES = 100;
+
+    private static final String[] RUNNER_NAMES = { FuelCellTrackingRunner.class.getSimpleName(),
+            LoadingStationRunner.class.getSimpleName() };
+
+    private static final List<String> OPTIONS = Arrays.asList("--output", "--threads", "--runner");
+    private static final String USAGE = "usage: --replay <directory or video> [--output <file.csv or file.json>]"
+            + " [--threads <count>] [--runner <runner name>]...";
+
+    /**
+     * The results of one runner for one frame.
+     */
+    public static class Detection {
+        public final int frame;
+        public final String runner;
+        public final boolean hasTarget;
+        public final double distance;
+        public final double angle;
+        public final double skew;
+
+        /** The time taken by the pipeline and post processing, in milliseconds. */
+        public final double latency;
+
+        /**
+         * Constructs an instance of this class.
+         *
+         * @param frame   The index of the frame in the recording.
+         * @param runner  The name of the runner.
+         * @param results The published results, laid out as described by
+         *                {@link ResultPublisher}.
+         * @param latency The time taken by the runner, in milliseconds.
+         */
+        public Detection(int frame, String runner, double[] results, double latency) {
+            this.frame = frame;
+            this.runner = runner;
+            this.hasTarget = results[ResultPublisher.HAS_TARGET] != 0.0;
+            this.distance = results[ResultPublisher.DISTANCE];
+            this.angle = results[ResultPublisher.ANGLE];
+            this.skew = results[ResultPublisher.SKEW];
+            this.latency = latency;
+        }
+    }
+
+    /**
+     * Keeps the last results published by a runner.
+     */
+    private static class LastResult implements ResultPublisher {
+        private final double[] values = new double[SIZE];
+
+        @Override
+        public void publish(boolean hasTarget, double distance, double angle, double skew, long sequence,
+                double timestamp, double predictedDistance, double predictedAngle, double predictionTimestamp) {
+            values[HAS_TARGET] = hasTarget ? 1.0 : 0.0;
+            values[DISTANCE] = distance;
+            values[ANGLE] = angle;
+            values[SKEW] = skew;
+            values[SEQUENCE] = sequence;
+            values[TIMESTAMP] = timestamp;
+            values[PREDICTED_DISTANCE] = predictedDistance;
+            values[PREDICTED_ANGLE] = predictedAngle;
+            values[PREDICTION_TIMESTAMP] = predictionTimestamp;
+        }
+    }
+
+    private final String path;
+    private final List<String> runnerNames;
+    private final int threads;
+    private double elapsedSeconds;
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param path        The path of a directory of images or a video file.
+     * @param runnerNames The simple class names of the runners to replay the
+     *                    frames through.
+     * @param threads     The largest number of chunks to replay at once.
+     */
+    public ReplayRunner(String path, List<String> runnerNames, int threads) {
+        this.path = path;
+        this.runnerNames = runnerNames;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Replays the recording.
+     *
+     * @return The results of each runner for each frame, in frame order.
+     * @throws IOException          If the recording cannot be read.
+     * @throws InterruptedException If interrupted while waiting for the chunks.
+     */
+    public List<Detection> run() throws IOException, InterruptedException {
+        int frameCount;
+        try (FrameSource source = FrameSource.open(path)) {
+            frameCount = source.getFrameCount();
+        }
+        int chunks = frameCount < 0 ? 1 : Math.max(1, Math.min(threads, frameCount / MIN_CHUNK_FRAMES));
+
+        long startTime = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(chunks);
+        try {
+            List<Future<List<Detection>>> futures = new ArrayList<>();
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                int start = frameCount < 0 ? 0 : (int) ((long) frameCount * chunk / chunks);
+                int end = frameCount < 0 ? Integer.MAX_VALUE : (int) ((long) frameCount * (chunk + 1) / chunks);
+                futures.add(executor.submit(() -> replay(start, end)));
+            }
+
+            List<Detection> detections = new ArrayList<>();
+            for (Future<List<Detection>> future : futures) {
+                detections.addAll(future.get());
+            }
+            elapsedSeconds = (System.nanoTime() - startTime) / 1e9;
+            return detections;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the wall clock time taken by the last replay.
+     *
+     * @return The time, in seconds.
+     */
+    public double getElapsedSeconds() {
+        return elapsedSeconds;
+    }
+
+    /**
+     * Replays a chunk of the recording through a new set of runners.
+     */
+    private List<Detection> replay(int start, int end) throws IOException {
+        List<TargetTrackingRunner<?>> runners = new ArrayList<>();
+        List<LastResult> results = new ArrayList<>();
+        for (String name : runnerNames) {
+            LastResult result = new LastResult();
+            runners.add(createRunner(name, result));
+            results.add(result);
+        }
+        FrameCache frameCache = runners.get(0).getContext().getFrameCache();
+        for (TargetTrackingRunner<?> runner : runners) {
+            runner.getContext().setFrameCache(frameCache);
+        }
+
+        List<Detection> detections = new ArrayList<>();
+        long[] pipelineTimes = new long[runners.size()];
+        Frame frame = new Frame(0, 0, CvType.CV_8UC3);
+        try (FrameSource source = FrameSource.open(path)) {
+            source.seek(start);
+            for (int index = start; index < end && source.read(frame.image); index++) {
+                frame.sequence = index;
+                frame.captureTime = System.nanoTime();
+                frame.timestamp = ServerClock.localNow();
+                frameCache.begin(frame.image);
+
+                // Run every pipeline before post processing, as the staged runner does
+                for (int i = 0; i < runners.size(); i++) {
+                    long startTime = System.nanoTime();
+                    runners.get(i).runPipeline(frame);
+                    pipelineTimes[i] = System.nanoTime() - startTime;
+                }
+                for (int i = 0; i < runners.size(); i++) {
+                    long startTime = System.nanoTime();
+                    runners.get(i).postProcess(frame);
+                    long time = pipelineTimes[i] + System.nanoTime() - startTime;
+                    detections.add(new Detection(index, runnerNames.get(i), results.get(i).values,
+                            Convert.nanosToMillis(time)));
+                }
+                frameCache.end();
+            }
+        } finally {
+            frame.release();
+        }
+        return detections;
+    }
+
+    /**
+     * Creates a runner by its simple class name.
+     */
+    private static TargetTrackingRunner<?> createRunner(String name, ResultPublisher resultPublisher) {
+        if (name.equals(FuelCellTrackingRunner.class.getSimpleName())) {
+            return new FuelCellTrackingRunner(resultPublisher);
+        } else if (name.equals(LoadingStationRunner.class.getSimpleName())) {
+            return new LoadingStationRunner(resultPublisher);
+        }
+        throw new IllegalArgumentException("unknown runner '" + name + "'");
+    }
+
+    /**
+     * Summarizes the frame rate and the latency percentiles of each runner.
+     *
+     * @param detections The results of a replay.
+     * @return The summary, with an entry for the whole replay and one for each
+     *         runner.
+     */
+    public JsonObject summarize(List<Detection> detections) {
+        Map<String, List<Double>> latencies = new LinkedHashMap<>();
+        for (Detection detection : detections) {
+            latencies.computeIfAbsent(detection.runner, runner -> new ArrayList<>()).add(detection.latency);
+        }
+
+        JsonObject summary = new JsonObject();
+        int frames = latencies.isEmpty() ? 0 : latencies.values().iterator().next().size();
+        summary.addProperty("frames", frames);
+        summary.addProperty("seconds", elapsedSeconds);
+        summary.addProperty("fps", elapsedSeconds > 0 ? frames / elapsedSeconds : 0);
+        for (Map.Entry<String, List<Double>> entry : latencies.entrySet()) {
+            double[] sorted = entry.getValue().stream().mapToDouble(Double::doubleValue).sorted().toArray();
+            JsonObject runner = new JsonObject();
+            runner.addProperty("targets",
+                    detections.stream().filter(d -> d.runner.equals(entry.getKey()) && d.hasTarget).count());
+            runner.addProperty("p50", percentile(sorted, 50));
+            runner.addProperty("p95", percentile(sorted, 95));
+            runner.addProperty("p99", percentile(sorted, 99));
+            runner.addProperty("max", sorted[sorted.length - 1]);
+            summary.add(entry.getKey(), runner);
+        }
+        return summary;
+    }
+
+    /**
+     * Returns a percentile of sorted values, by the nearest rank method.
+     */
+    private static double percentile(double[] sorted, double percentile) {
+        int rank = (int) Math.ceil(sorted.length * percentile / 100.0);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Writes the results of a replay as comma separated values, one line per
+     * runner per frame.
+     */
+    private static void writeCsv(List<Detection> detections, PrintWriter writer) {
+        writer.println("frame,runner,hasTarget,distance,angle,skew,latency");
+        for (Detection d : detections) {
+            writer.println(String.format(Locale.ROOT, "%d,%s,%b,%.3f,%.3f,%.4f,%.3f", d.frame, d.runner,
+                    d.hasTarget, d.distance, d.angle, d.skew, d.latency));
+        }
+    }
+
+    /**
+     * Replays a recording from the command line.
+     *
+     * <pre>
+     * --replay &lt;directory or video&gt; [--output &lt;file.csv or file.json&gt;]
+     *          [--threads &lt;count&gt;] [--runner &lt;runner name&gt;]...
+     * </pre>
+     *
+     * The summary is printed, and is also written with the detections when the
+     * output is JSON.
+     *
+     * @param args The command line arguments, after --replay.
+     */
+    public static void main(String... args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            System.err.println(USAGE);
+            return;
+        }
+        String path = args[0];
+        String output = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> runnerNames = new ArrayList<>();
+        for (int i = 1; i < args.length; i += 2) {
+            if (!OPTIONS.contains(args[i])) {
+                System.err.println("unknown option '" + args[i] + "'");
+                System.err.println(USAGE);
+                return;
+            }
+            if (i + 1 == args.length) {
+                System.err.println("option '" + args[i] + "' has no value");
+                System.err.println(USAGE);
+                return;
+            }
+            if ("--output".equals(args[i])) {
+                output = args[i + 1];
+            } else if ("--threads".equals(args[i])) {
+                threads = Integer.parseInt(args[i + 1]);
+            } else {
+                runnerNames.add(args[i + 1]);
+            }
+        }
+        if (runnerNames.isEmpty()) {
+            runnerNames.addAll(Arrays.asList(RUNNER_NAMES));
+        }
+
+        // Load OpenCV without cscore, and keep the runners off the compatibility view
+        CameraServerCvJNI.forceLoad();
+        SmartDashboard.putBoolean(TargetTrackingRunner.COMPATIBILITY_VIEW_KEY, false);
+
+        ReplayRunner replay = new ReplayRunner(path, runnerNames, threads);
+        List<Detection> detections = replay.run();
+        JsonObject summary = replay.summarize(detections);
+
+        if (output != null) {
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(output)))) {
+                if (output.toLowerCase().endsWith(".json")) {
+                    JsonObject json = new JsonObject();
+                    json.add("summary", summary);
+                    json.add("detections", new GsonBuilder().create().toJsonTree(detections));
+                    new GsonBuilder().setPrettyPrinting().create().toJson(json, writer);
+                } else {
+                    writeCsv(detections, writer);
+                }
+            }
+        }
+        System.out.println(new GsonBuilder().setPrettyPrinting().create().toJson(summary));
+    }
+}
@@ -0,0 +1,55 @@
+package runner;
+
+/**
+ * Receives the results of a runner for each frame.
+ *
+ * <p>
+ * Results are passed around as a double array laid out as follows:
+ *
+ * <pre>
+ * [0] has target (1.0 or 0.0)
+ * [1] distance to the target, in inches
+ * [2] angle to the target, in degrees
+ * [3] skew of the target
+ * [4] frame sequence number
+ * [5] frame capture timestamp, in microseconds in the server time base
+ * [6] predicted distance to the target at the time of publishing, in inches
+ * [7] predicted angle to the target at the time of publishing, in degrees
+ * [8] time of publishing, in microseconds in the server time base
+ * </pre>
+ *
+ * The server time base is that of the network tables server, as estimated by
+ * a {@link ServerClock}.
+ */
+public interface ResultPublisher {
+    int HAS_TARGET = 0;
+    int DISTANCE = 1;
+    int ANGLE = 2;
+    int SKEW = 3;
+    int SEQUENCE = 4;
+    int TIMESTAMP = 5;
+    int PREDICTED_DISTANCE = 6;
+    int PREDICTED_ANGLE = 7;
+    int PREDICTION_TIMESTAMP = 8;
+    int SIZE = 9;
+
+    /**
+     * Publishes the results for a frame.
+     *
+     * @param hasTarget           Whether a target was found.
+     * @param distance            The distance to the target, in inches.
+     * @param angle               The angle to the target, in degrees.
+     * @param skew                The skew of the target.
+     * @param sequence            The sequence number of the frame.
+     * @param timestamp           The time at which the frame was captured, in
+     *                            microseconds.
+     * @param predictedDistance   The distance to the target extrapolated to the
+     *                            prediction time, in inches.
+     * @param predictedAngle      The angle to the target extrapolated to the
+     *                            prediction time, in degrees.
+     * @param predictionTimestamp The time for which the prediction is made, in
+     *                            microseconds.
+     */
+    void publish(boolean hasTarget, double distance, double angle, double skew, long sequence, double timestamp,
+            double predictedDistance, double predictedAngle, double predictionTimestamp);
+}
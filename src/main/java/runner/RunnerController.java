@@ -0,0 +1,151 @@
+package runner;
+
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import edu.wpi.first.networktables.EntryListenerFlags;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+
+/**
+ * Switches between runners when the {@code runnerName} entry of a network
+ * table changes.
+ *
+ * <p>
+ * The switch is made by the entry listener, which stops the previous runner and
+ * starts the new one. In serial mode a vision thread runs the active runner one
+ * frame at a time; in staged mode the stage threads of a {@link StagedRunner} do.
+ * When the name matches no runner, vision is idle: the vision thread parks until
+ * the name changes, and {@code paused} is published as true with
+ * {@code activeRunner} set to {@value #IDLE}. A {@link FrameRateGovernor}, if
+ * set, limits the rate at which frames are processed.
+ */
+public class RunnerController {
+    public static final String IDLE = "idle";
+
+    private final Map<String, TargetTrackingRunner<?>> runners;
+    private final boolean staged;
+    private final int slots;
+    private final NetworkTableEntry runnerNameEntry;
+    private final NetworkTableEntry activeRunnerEntry;
+    private final NetworkTableEntry pausedEntry;
+
+    /** Fair, so that a switch is not held off by the vision thread taking the lock back. */
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition runnerChanged = lock.newCondition();
+    private TargetTrackingRunner<?> activeRunner;
+    private StagedRunner stagedRunner;
+    private Thread visionThread;
+    private FrameRateGovernor governor;
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param table         The table holding the runner entries.
+     * @param runners       The runners, by name.
+     * @param defaultRunner The name of the runner to start if none is selected.
+     * @param staged        Whether to run the active runner as stages on
+     *                      separate threads.
+     * @param slots         The number of frames in flight in staged mode.
+     */
+    public RunnerController(NetworkTable table, Map<String, TargetTrackingRunner<?>> runners, String defaultRunner,
+            boolean staged, int slots) {
+        this.runners = Map.copyOf(runners);
+        this.staged = staged;
+        this.slots = slots;
+        this.runnerNameEntry = table.getEntry("runnerName");
+        this.activeRunnerEntry = table.getEntry("activeRunner");
+        this.pausedEntry = table.getEntry("paused");
+        this.runnerNameEntry.setDefaultString(defaultRunner);
+    }
+
+    /**
+     * Sets the governor that limits the rate at which frames are processed.
+     * Must be called before {@link #start}.
+     *
+     * @param governor The frame rate governor, or null for none.
+     */
+    public void setGovernor(FrameRateGovernor governor) {
+        this.governor = governor;
+    }
+
+    /**
+     * Starts the vision thread and listens for the selected runner to change.
+     */
+    public void start() {
+        visionThread = new Thread(this::run, "Vision " + runnerNameEntry.getName());
+        visionThread.setDaemon(true);
+        visionThread.start();
+
+        activeRunnerEntry.setString(IDLE);
+        pausedEntry.setBoolean(true);
+        runnerNameEntry.addListener(event -> select(event.value.isString() ? event.value.getString() : null),
+                EntryListenerFlags.kImmediate | EntryListenerFlags.kNew | EntryListenerFlags.kUpdate);
+    }
+
+    /**
+     * Stops the active runner and starts the named runner, or goes idle if the
+     * name matches no runner.
+     *
+     * @param name The name of the runner to run.
+     */
+    private void select(String name) {
+        TargetTrackingRunner<?> runner = name != null ? runners.get(name) : null;
+        lock.lock();
+        try {
+            if (runner == activeRunner) {
+                return;
+            }
+            if (stagedRunner != null) {
+                stagedRunner.stop();
+                stagedRunner = null;
+            }
+            if (activeRunner != null) {
+                activeRunner.stop();
+            }
+
+            activeRunner = runner;
+            if (runner != null) {
+                runner.start();
+                if (staged) {
+                    stagedRunner = new StagedRunner(runner, slots);
+                    stagedRunner.setGovernor(governor);
+                    stagedRunner.start();
+                }
+            }
+            activeRunnerEntry.setString(runner != null ? name : IDLE);
+            pausedEntry.setBoolean(runner == null);
+            runnerChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The vision thread. Runs the active runner in serial mode, no faster than
+     * the governor allows, and otherwise parks until the active runner changes.
+     */
+    private void run() {
+        try {
+            while (!Thread.interrupted()) {
+                long frameStartTime;
+                lock.lock();
+                try {
+                    while (activeRunner == null || stagedRunner != null) {
+                        runnerChanged.await();
+                    }
+                    frameStartTime = System.nanoTime();
+                    activeRunner.runOnce();
+                } finally {
+                    lock.unlock();
+                }
+                if (governor != null) {
+                    governor.pace(frameStartTime);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Stopped
+        }
+    }
+}
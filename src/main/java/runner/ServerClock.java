@@ -0,0 +1,159 @@
+package runner;
+
+import edu.wpi.first.networktables.EntryListenerFlags;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.networktables.NetworkTablesJNI;
+
+/**
+ * Converts local timestamps, such as the frame times returned by cscore, to the
+ * time base of the network tables server.
+ *
+ * <p>
+ * Local timestamps are in microseconds from the same clock as
+ * {@link NetworkTablesJNI#now}. When this process is the server the time bases
+ * are the same. Otherwise the offset is estimated by a ping: once a second the
+ * local time is written to the {@code ping} entry, and the server is expected
+ * to answer by setting {@code pong} to an array of that ping time and its own
+ * time in microseconds, for example with the FPGA timestamp. The offset is
+ * taken from the answer with the shortest round trip among the recent ones, and
+ * published with that round trip and whether the clock is synchronized. Until
+ * the first answer, server timestamps are local timestamps.
+ */
+public class ServerClock {
+    private static final long PING_PERIOD = 1000L;
+
+    /** The number of recent answers from which the offset is chosen. */
+    private static final int SAMPLES = 16;
+
+    private final NetworkTable table;
+    private final long[] offsets = new long[SAMPLES];
+    private final long[] roundTrips = new long[SAMPLES];
+    private int samples = 0;
+    private int nextSample = 0;
+    private volatile long offset = 0;
+    private volatile long pingTime;
+    private Thread thread;
+
+    /**
+     * Constructs an instance of this class whose server time base is the local
+     * time base, for use without a network tables server.
+     */
+    public ServerClock() {
+        this(null);
+    }
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param table The table holding the ping entries, or null if this process
+     *              is the network tables server.
+     */
+    public ServerClock(NetworkTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Starts pinging the server, if this process is not the server.
+     */
+    public void start() {
+        if (table == null) {
+            return;
+        }
+        NetworkTableEntry pingEntry = table.getEntry("ping");
+        NetworkTableEntry pongEntry = table.getEntry("pong");
+        table.getEntry("synchronized").setBoolean(false);
+        pongEntry.addListener(event -> {
+            if (event.value.isDoubleArray()) {
+                double[] pong = event.value.getDoubleArray();
+                if (pong.length >= 2) {
+                    answer((long) pong[0], (long) pong[1]);
+                }
+            }
+        }, EntryListenerFlags.kNew | EntryListenerFlags.kUpdate);
+
+        thread = new Thread(() -> {
+            try {
+                while (!Thread.interrupted()) {
+                    pingTime = localNow();
+                    pingEntry.setDouble(pingTime);
+                    pingEntry.getInstance().flush();
+                    Thread.sleep(PING_PERIOD);
+                }
+            } catch (InterruptedException e) {
+                // Stopped
+            }
+        }, "ServerClock");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the current local time.
+     *
+     * @return The local time, in microseconds.
+     */
+    public static long localNow() {
+        return NetworkTablesJNI.now();
+    }
+
+    /**
+     * Returns the current time in the server time base.
+     *
+     * @return The server time, in microseconds.
+     */
+    public long now() {
+        return localNow() + offset;
+    }
+
+    /**
+     * Converts a local timestamp to the server time base.
+     *
+     * @param localTime The local time, in microseconds.
+     * @return The server time, in microseconds.
+     */
+    public long toServerTime(long localTime) {
+        return localTime + offset;
+    }
+
+    /**
+     * Sets the capture times of a frame from the local time at which it was
+     * captured, so that its latency is measured from capture rather than from
+     * when it was grabbed.
+     *
+     * @param frame     The frame.
+     * @param localTime The local capture time, in microseconds, as returned by
+     *                  {@code CvSink.grabFrame}.
+     */
+    public void stamp(Frame frame, long localTime) {
+        long age = Math.max(0, localNow() - localTime);
+        frame.captureTime = System.nanoTime() - age * 1000;
+        frame.timestamp = toServerTime(localTime);
+    }
+
+    /**
+     * Takes an answer to the last ping into account.
+     */
+    private synchronized void answer(long ping, long serverTime) {
+        long now = localNow();
+        if (ping != pingTime || now < ping) {
+            return;
+        }
+        long roundTrip = now - ping;
+        offsets[nextSample] = serverTime - (ping + roundTrip / 2);
+        roundTrips[nextSample] = roundTrip;
+        nextSample = (nextSample + 1) % SAMPLES;
+        samples = Math.min(SAMPLES, samples + 1);
+
+        int best = 0;
+        for (int i = 1; i < samples; i++) {
+            if (roundTrips[i] < roundTrips[best]) {
+                best = i;
+            }
+        }
+        offset = offsets[best];
+        table.getEntry("offset").setDouble(offsets[best]);
+        table.getEntry("roundTrip").setDouble(roundTrips[best]);
+        table.getEntry("synchronized").setBoolean(true);
+    }
+}
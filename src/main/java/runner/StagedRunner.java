@@ -0,0 +1,255 @@
+package runner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.opencv.core.CvType;
+
+import edu.wpi.cscore.CvSink;
+import edu.wpi.cscore.VideoMode;
+import pipeline.FrameCache;
+
+/**
+ * Runs one or more target tracking runners as three stages, each on its own
+ * thread: capture, processing and annotated stream output.
+ *
+ * <p>
+ * A fixed number of preallocated frames circulate through bounded queues from
+ * one stage to the next and back to the capture stage, so the detection rate is
+ * set by the slowest stage rather than the sum of all of them.
+ *
+ * <p>
+ * When there are several runners, each frame is captured once from the video
+ * source of the first runner and the pipelines of all runners run on it at the
+ * same time, each on its own thread, sharing a cache of the images derived from
+ * the frame. Post processing then adds the annotations of every runner in turn
+ * to the frame's overlay, and the frame is output with the combined overlay
+ * through the first runner's video stream.
+ */
+public class StagedRunner {
+    private final List<TargetTrackingRunner<?>> runners;
+    private final TargetTrackingRunner<?> runner;
+    private final List<Callable<Void>> pipelineTasks = new ArrayList<>();
+    private final List<Future<Void>> pipelineResults = new ArrayList<>();
+    private final FrameCache frameCache;
+    private ExecutorService pipelineExecutor;
+    private Frame currentFrame;
+    private final List<Frame> frames = new ArrayList<>();
+    private final BlockingQueue<Frame> freeFrames;
+    private final BlockingQueue<Frame> capturedFrames;
+    private final BlockingQueue<Frame> processedFrames;
+    private final List<Thread> threads = new ArrayList<>();
+    private CvSink cvSink;
+    private FrameRateGovernor governor;
+    private long sequence = 0;
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param runner The runner whose pipeline is run by the processing stage.
+     * @param slots  The number of frames circulating between the stages.
+     */
+    public StagedRunner(TargetTrackingRunner<?> runner, int slots) {
+        this(List.of(runner), slots);
+    }
+
+    /**
+     * Constructs an instance of this class that runs several runners on the same
+     * frames.
+     *
+     * @param runners The runners whose pipelines are run by the processing stage.
+     *                The first runner supplies the video source and output.
+     * @param slots   The number of frames circulating between the stages.
+     */
+    public StagedRunner(List<TargetTrackingRunner<?>> runners, int slots) {
+        this.runners = List.copyOf(runners);
+        this.runner = this.runners.get(0);
+        this.frameCache = this.runner.getContext().getFrameCache();
+        for (TargetTrackingRunner<?> other : this.runners) {
+            other.getContext().setFrameCache(this.frameCache);
+        }
+        this.freeFrames = new ArrayBlockingQueue<>(slots);
+        this.capturedFrames = new ArrayBlockingQueue<>(slots);
+        this.processedFrames = new ArrayBlockingQueue<>(slots);
+
+        VideoMode videoMode = runner.getVideoSource().getVideoMode();
+        for (int i = 0; i < slots; i++) {
+            Frame frame = new Frame(videoMode.width, videoMode.height, CvType.CV_8UC3);
+            frames.add(frame);
+            freeFrames.add(frame);
+        }
+
+        // The first pipeline runs on the processing thread, the rest in parallel
+        for (TargetTrackingRunner<?> other : this.runners.subList(1, this.runners.size())) {
+            pipelineTasks.add(() -> {
+                other.runPipeline(currentFrame);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Sets the governor that limits the rate at which frames are captured.
+     *
+     * @param governor The frame rate governor, or null for none.
+     */
+    public void setGovernor(FrameRateGovernor governor) {
+        this.governor = governor;
+    }
+
+    /**
+     * Starts the capture, processing and stream threads.
+     */
+    public void start() {
+        String name = runners.size() == 1 ? runner.getClass().getSimpleName() : "MultiRunner";
+        if (!pipelineTasks.isEmpty()) {
+            pipelineExecutor = Executors.newFixedThreadPool(pipelineTasks.size(), task -> {
+                Thread thread = new Thread(task, name + " pipeline");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        cvSink = new CvSink("Staged " + name);
+        cvSink.setSource(runner.getVideoSource());
+
+        threads.add(new Thread(this::capture, name + " capture"));
+        threads.add(new Thread(this::process, name + " process"));
+        threads.add(new Thread(this::stream, name + " stream"));
+        for (Thread thread : threads) {
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the stage threads and releases the frames.
+     */
+    public void stop() {
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        threads.clear();
+        if (pipelineExecutor != null) {
+            pipelineExecutor.shutdownNow();
+            pipelineExecutor = null;
+        }
+        if (cvSink != null) {
+            cvSink.close();
+            cvSink = null;
+        }
+        for (Frame frame : frames) {
+            frame.release();
+        }
+    }
+
+    /**
+     * The capture stage. Grabs camera frames into free frames, no faster than
+     * the governor allows.
+     */
+    private void capture() {
+        long lastCaptureTime = System.nanoTime();
+        try {
+            while (!Thread.interrupted()) {
+                Frame frame = freeFrames.take();
+                if (governor != null) {
+                    governor.pace(lastCaptureTime);
+                }
+                long frameTime = cvSink.grabFrame(frame.image);
+                if (frameTime == 0) {
+                    System.err.println("capture error: " + cvSink.getError());
+                    freeFrames.put(frame);
+                    continue;
+                }
+                frame.sequence = sequence++;
+                runner.stampFrame(frame, frameTime);
+                lastCaptureTime = frame.captureTime;
+                runner.recordFrame(frame);
+                capturedFrames.put(frame);
+            }
+        } catch (InterruptedException e) {
+            // Stopped
+        }
+    }
+
+    /**
+     * The processing stage. Runs the pipeline and post processing on captured
+     * frames.
+     */
+    private void process() {
+        try {
+            while (!Thread.interrupted()) {
+                Frame frame = capturedFrames.take();
+                runPipelines(frame);
+                frame.streamDue = runner.isStreamDue();
+                frame.overlay.clear();
+                for (TargetTrackingRunner<?> each : runners) {
+                    each.postProcess(frame);
+                }
+                processedFrames.put(frame);
+            }
+        } catch (InterruptedException e) {
+            // Stopped
+        }
+    }
+
+    /**
+     * Runs the pipelines of all runners on a frame, returning once all of them
+     * are done with it.
+     */
+    private void runPipelines(Frame frame) throws InterruptedException {
+        frameCache.begin(frame.image);
+        if (pipelineExecutor == null) {
+            runner.runPipeline(frame);
+            frameCache.end();
+            return;
+        }
+
+        currentFrame = frame;
+        pipelineResults.clear();
+        for (Callable<Void> task : pipelineTasks) {
+            pipelineResults.add(pipelineExecutor.submit(task));
+        }
+        runner.runPipeline(frame);
+        for (Future<Void> result : pipelineResults) {
+            try {
+                result.get();
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+            }
+        }
+        frameCache.end();
+    }
+
+    /**
+     * The stream stage. Outputs processed frames and returns them to the capture
+     * stage.
+     */
+    private void stream() {
+        try {
+            while (!Thread.interrupted()) {
+                Frame frame = processedFrames.take();
+                if (frame.streamDue) {
+                    runner.streamFrame(frame.image, frame.overlay);
+                }
+                runner.reportLatency(frame.captureTime, frame.postProcessTime);
+                freeFrames.put(frame);
+            }
+        } catch (InterruptedException e) {
+            // Stopped
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package runner;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import utilities.LatencyHistogram;
+
+/**
+ * Decides which frames are annotated and put to the processed video stream, and
+ * at what resolution and JPEG quality.
+ *
+ * <p>
+ * Frames are streamed only while a client is connected to the stream, at no
+ * more than {@code stream/fps} frames per second whatever the detection rate.
+ * When the 95th percentile of the vision loop latency goes over
+ * {@code stream/latencyBudget} milliseconds, the stream drops to a lower
+ * resolution and quality, one step at a time; it steps back up once the latency
+ * is well within the budget. The settings are kept in the runner's table when
+ * it has its own, and in {@code Vision} otherwise. Each step is held for a full latency
+ * window, so the effect of one step is measured before the next is taken.
+ *
+ * <p>
+ * A {@link FrameRateGovernor}, if set, further lowers the frame rate and may
+ * hold the stream at a lower resolution step while the CPU is hot or loaded.
+ */
+class StreamController {
+    /** The stream resolution, as a fraction of the output video mode, at each step. */
+    private static final double[] SCALES = { 1.0, 0.75, 0.5 };
+
+    /** The JPEG quality at each step. */
+    private static final int[] QUALITIES = { 80, 60, 40 };
+
+    private static final long CHECK_PERIOD = 1000000000L;
+    private static final long HOLD_PERIOD = 5000000000L;
+
+    private final String fpsKey;
+    private final String latencyBudgetKey;
+    private final String scaleKey;
+    private final String qualityKey;
+    private int step = 0;
+    private int appliedStep = 0;
+    private FrameRateGovernor governor;
+    private long lastFrameTime;
+    private long lastCheckTime;
+    private long lastStepTime;
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param tableName The path of the table under whose {@code stream}
+     *                  subtable the settings are kept.
+     */
+    StreamController(String tableName) {
+        this.fpsKey = tableName + "/stream/fps";
+        this.latencyBudgetKey = tableName + "/stream/latencyBudget";
+        this.scaleKey = tableName + "/stream/scale";
+        this.qualityKey = tableName + "/stream/quality";
+        SmartDashboard.setDefaultNumber(fpsKey, 15);
+        SmartDashboard.setDefaultNumber(latencyBudgetKey, 50);
+        SmartDashboard.putNumber(scaleKey, SCALES[step]);
+        SmartDashboard.putNumber(qualityKey, QUALITIES[step]);
+    }
+
+    /**
+     * Sets the governor that lowers the stream rate and resolution when the CPU
+     * is hot or loaded.
+     *
+     * @param governor The frame rate governor, or null for none.
+     */
+    void setGovernor(FrameRateGovernor governor) {
+        this.governor = governor;
+    }
+
+    /**
+     * Returns whether the current frame should be annotated and streamed.
+     *
+     * @param connected Whether a client is connected to the stream.
+     * @return True if the frame should be streamed.
+     */
+    boolean isDue(boolean connected) {
+        if (!connected) {
+            return false;
+        }
+        long now = System.nanoTime();
+        double fps = SmartDashboard.getNumber(fpsKey, 15);
+        if (governor != null) {
+            fps *= governor.getStreamRate();
+        }
+        if (fps > 0 && now - lastFrameTime < (long) (1e9 / fps)) {
+            return false;
+        }
+        lastFrameTime = now;
+        return true;
+    }
+
+    /**
+     * Steps the stream resolution and quality down if the vision loop is over
+     * its latency budget, or up if it is well within it, never above the step
+     * set by the governor.
+     *
+     * @param latency The latency of the whole vision loop.
+     * @return True if the resolution and quality changed.
+     */
+    boolean adjust(LatencyHistogram latency) {
+        long now = System.nanoTime();
+        if (now - lastCheckTime < CHECK_PERIOD) {
+            return false;
+        }
+        lastCheckTime = now;
+
+        if (now - lastStepTime >= HOLD_PERIOD) {
+            double p95 = latency.getPercentile(95);
+            double budget = SmartDashboard.getNumber(latencyBudgetKey, 50);
+            if (p95 > budget && step < SCALES.length - 1) {
+                step++;
+                lastStepTime = now;
+            } else if (p95 < 0.75 * budget && step > 0) {
+                step--;
+                lastStepTime = now;
+            }
+        }
+
+        int newStep = governor != null ? Math.max(step, governor.getStreamStep()) : step;
+        if (newStep == appliedStep) {
+            return false;
+        }
+        appliedStep = newStep;
+        SmartDashboard.putNumber(scaleKey, SCALES[appliedStep]);
+        SmartDashboard.putNumber(qualityKey, QUALITIES[appliedStep]);
+        return true;
+    }
+
+    /**
+     * Returns the stream resolution.
+     *
+     * @return The fraction of the output video mode at which to stream.
+     */
+    double getScale() {
+        return SCALES[appliedStep];
+    }
+
+    /**
+     * Returns the stream JPEG quality.
+     *
+     * @return The quality, from 0 to 100.
+     */
+    int getQuality() {
+        return QUALITIES[appliedStep];
+    }
+}
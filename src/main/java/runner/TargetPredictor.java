@@ -0,0 +1,93 @@
+package runner;
+
+/**
+ * Estimates the distance and angle to a target and their rates of change with
+ * a constant velocity (alpha-beta) filter, so that the target can be
+ * extrapolated from the time a frame was captured to the time the result is
+ * used.
+ *
+ * <p>
+ * The filter restarts when the target is lost or when there is a long gap
+ * between measurements, and predictions are extrapolated no further than
+ * {@value #MAX_EXTRAPOLATION} microseconds past the last measurement.
+ */
+class TargetPredictor {
+    private static final double ALPHA = 0.5;
+    private static final double BETA = 0.2;
+    private static final long MAX_GAP = 500000L;
+    private static final long MAX_EXTRAPOLATION = 250000L;
+
+    private boolean tracking = false;
+    private long time;
+    private double distance;
+    private double distanceRate;
+    private double angle;
+    private double angleRate;
+
+    /**
+     * Forgets the target.
+     */
+    void reset() {
+        tracking = false;
+    }
+
+    /**
+     * Adds a measurement of the target.
+     *
+     * @param time     The time at which the measurement was made, in
+     *                 microseconds.
+     * @param distance The distance to the target.
+     * @param angle    The angle to the target.
+     */
+    void update(long time, double distance, double angle) {
+        long gap = time - this.time;
+        if (!tracking || gap <= 0 || gap > MAX_GAP) {
+            tracking = true;
+            this.time = time;
+            this.distance = distance;
+            this.angle = angle;
+            this.distanceRate = 0;
+            this.angleRate = 0;
+            return;
+        }
+
+        double dt = gap / 1e6;
+        double predictedDistance = this.distance + distanceRate * dt;
+        double predictedAngle = this.angle + angleRate * dt;
+        double distanceResidual = distance - predictedDistance;
+        double angleResidual = angle - predictedAngle;
+        this.distance = predictedDistance + ALPHA * distanceResidual;
+        this.angle = predictedAngle + ALPHA * angleResidual;
+        this.distanceRate += BETA * distanceResidual / dt;
+        this.angleRate += BETA * angleResidual / dt;
+        this.time = time;
+    }
+
+    /**
+     * Returns the predicted distance to the target.
+     *
+     * @param time The time for which to predict, in microseconds.
+     * @return The distance, or 0 if there is no target.
+     */
+    double predictDistance(long time) {
+        return tracking ? distance + distanceRate * extrapolation(time) : 0;
+    }
+
+    /**
+     * Returns the predicted angle to the target.
+     *
+     * @param time The time for which to predict, in microseconds.
+     * @return The angle, or 0 if there is no target.
+     */
+    double predictAngle(long time) {
+        return tracking ? angle + angleRate * extrapolation(time) : 0;
+    }
+
+    /**
+     * Returns the time from the last measurement to the prediction time, in
+     * seconds, limited to the largest extrapolation.
+     */
+    private double extrapolation(long time) {
+        return Math.max(0, Math.min(MAX_EXTRAPOLATION, time - this.time)) / 1e6;
+    }
+}
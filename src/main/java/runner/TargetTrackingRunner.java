@@ -1,17 +1,29 @@
 package runner;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 
+import edu.wpi.cscore.CvSink;
 import edu.wpi.cscore.CvSource;
 import edu.wpi.cscore.VideoMode;
+import edu.wpi.cscore.VideoSink;
 import edu.wpi.cscore.VideoSource;
-import edu.wpi.first.vision.VisionPipeline;
-import edu.wpi.first.vision.VisionRunner;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import pipeline.ContextPipeline;
+import pipeline.FrameCache;
+import pipeline.PipelineContext;
 import utilities.Convert;
+import utilities.LatencyProfile;
 import utilities.ResourceUtils;
 
 /**
@@ -19,45 +31,213 @@ import utilities.ResourceUtils;
  * 
  * @param <Pipeline>
  */
-public abstract class TargetTrackingRunner<Pipeline extends VisionPipeline> {
+public abstract class TargetTrackingRunner<Pipeline extends ContextPipeline> {
+    static final String COMPATIBILITY_VIEW_KEY = "Vision/compatibilityView";
+    private static final String COMPATIBILITY_PERIOD_KEY = "Vision/compatibilityPeriod";
+    private static final long PROFILE_PUBLISH_PERIOD = 1000000000L;
+
     private Pipeline pipeline;
+    private PipelineContext context = new PipelineContext();
     private VideoSource videoSource;
     private CvSource processedVideo;
-    private Mat image;
     private Mat processedImage;
-    private VisionRunner<Wrapper> runner;
-    private long pipelineStartTime;
-    private long postProcessStartTime;
+    private CvSink cvSink;
+    private Frame serialFrame;
     private int genCount = 0;
+    private long sequence = 0;
+    private long frameSequence;
+    private long frameTimestamp;
+    private ServerClock serverClock = new ServerClock();
+    private final TargetPredictor predictor = new TargetPredictor();
+    private ResultPublisher resultPublisher;
+    private NetworkTable latencyTable;
+    private NetworkTableEntry totalTimeEntry;
+    private NetworkTableEntry postProcessTimeEntry;
+    private NetworkTableEntry genCountEntry;
+    private NetworkTableEntry frameCacheHitsEntry;
+    private NetworkTableEntry frameCacheMissesEntry;
+    private NetworkTable matPoolTable;
+    private boolean compatibilityViewDue;
+    private long lastCompatibilityViewTime;
+    private long lastLatencyReportTime;
+    private long lastProfilePublishTime;
+    private final LatencyProfile profile = context.getProfile();
+    private final int pipelineStage = profile.stage("pipeline");
+    private final int collectStage = profile.stage("collect");
+    private final int postProcessStage = profile.stage("postProcess");
+    private final int resizeStage = profile.stage("resize");
+    private final int annotateStage = profile.stage("annotate");
+    private final int putFrameStage = profile.stage("putFrame");
+    private final int totalStage = profile.stage("total");
+    private final ImageRegion region = new ImageRegion();
+    private final RegionTracker regionTracker = new RegionTracker();
+    private final String tableName;
+    private final boolean namespaced;
+    private final String regionTrackingKey;
+    private final String maxMissedFramesKey;
+    private boolean regionTracking;
+    private boolean targetTracked;
+    private final String pyramidLevelsKey;
+    private final ImageRegion coarseRegion = new ImageRegion();
+    private final List<Rect> candidates = new ArrayList<>();
+    private final Mat coarseImage = new Mat();
+    private Pipeline coarsePipeline;
+    private int coarseLevels;
+    private FrameRecorder frameRecorder;
+    private StreamController streamController;
+    private FrameRateGovernor governor;
+    private VideoSink streamServer;
+    private boolean streamDue;
+    private final Size streamSize = new Size();
+    private Overlay overlay = new Overlay();
 
     /**
-     * A wrapper that allows us to capture the current image to be processed by the
-     * GRIP pipeline.
+     * Contructs an instance of this class.
+     * 
+     * @param videoSource    The input video source.
+     * @param pipeline       The GRIP pipeline.
+     * @param processedVideo The annotated output video.
      */
-    private class Wrapper implements VisionPipeline {
-        @Override
-        public void process(Mat arg0) {
-            pipelineStartTime = System.nanoTime();
-            image = arg0;
-            pipeline.process(arg0);
-        }
+    public TargetTrackingRunner(VideoSource videoSource, Pipeline pipeline, CvSource processedVideo) {
+        this(videoSource, pipeline, processedVideo, null);
     }
 
     /**
-     * Contructs an instance of this class.
+     * Contructs an instance of this class that publishes its results and reads
+     * its settings in the specified table, so that several instances of the same
+     * runner can run on different cameras.
      * 
      * @param videoSource    The input video source.
      * @param pipeline       The GRIP pipeline.
      * @param processedVideo The annotated output video.
+     * @param tableName      The path of the runner's network table, or null for
+     *                       "Vision/" followed by the simple name of the class.
      */
-    public TargetTrackingRunner(VideoSource videoSource, Pipeline pipeline, CvSource processedVideo) {
+    public TargetTrackingRunner(VideoSource videoSource, Pipeline pipeline, CvSource processedVideo,
+            String tableName) {
+        this.tableName = tableName != null ? tableName : "Vision/" + getClass().getSimpleName();
+        this.namespaced = tableName != null;
+        this.regionTrackingKey = this.tableName + "/regionTracking";
+        this.maxMissedFramesKey = this.regionTrackingKey + "MaxMissedFrames";
+        this.pyramidLevelsKey = this.tableName + "/pyramidLevels";
         this.videoSource = videoSource;
         this.pipeline = pipeline;
         this.processedVideo = processedVideo;
-        this.runner = new VisionRunner<Wrapper>(videoSource, new Wrapper(), this::unwrap);
+        this.pipeline.setContext(this.context);
+        this.cvSink = new CvSink(getClass().getSimpleName() + " " + this.tableName);
+        this.cvSink.setSource(videoSource);
+        this.serialFrame = new Frame(0, 0, CvType.CV_8UC3);
 
         VideoMode videoMode = processedVideo.getVideoMode();
         this.processedImage = new Mat(videoMode.height, videoMode.width, videoMode.pixelFormat.getValue());
+        this.streamController = new StreamController(getSettingsTableName("Vision"));
+
+        setDefaults();
+
+        this.resultPublisher = new NetworkTableResultPublisher(NetworkTableInstance.getDefault().getTable(this.tableName));
+        this.latencyTable = NetworkTableInstance.getDefault().getTable(this.tableName + "/latency");
+        bindStatistics();
+    }
+
+    /**
+     * Contructs an instance of this class that has no camera or output video, for
+     * processing recorded frames with {@link #processFrame}.
+     * 
+     * @param pipeline        The GRIP pipeline.
+     * @param resultPublisher Receives the results for each frame.
+     */
+    protected TargetTrackingRunner(Pipeline pipeline, ResultPublisher resultPublisher) {
+        this.tableName = "Vision/" + getClass().getSimpleName();
+        this.namespaced = false;
+        this.regionTrackingKey = this.tableName + "/regionTracking";
+        this.maxMissedFramesKey = this.regionTrackingKey + "MaxMissedFrames";
+        this.pyramidLevelsKey = this.tableName + "/pyramidLevels";
+        this.pipeline = pipeline;
+        this.pipeline.setContext(this.context);
+        this.resultPublisher = resultPublisher;
+        setDefaults();
+    }
+
+    /**
+     * Sets the default values of the runner settings.
+     */
+    private void setDefaults() {
+        SmartDashboard.setDefaultBoolean(regionTrackingKey, false);
+        SmartDashboard.setDefaultNumber(maxMissedFramesKey, 5);
+        SmartDashboard.setDefaultNumber(pyramidLevelsKey, 0);
+        SmartDashboard.setDefaultBoolean(COMPATIBILITY_VIEW_KEY, true);
+        SmartDashboard.setDefaultNumber(COMPATIBILITY_PERIOD_KEY, 0.2);
+    }
+
+    /**
+     * Builds the entries in which the latency totals and the frame cache and
+     * pool statistics are reported.
+     */
+    private void bindStatistics() {
+        String statisticsTableName = getSettingsTableName("Vision");
+        if (this.namespaced) {
+            totalTimeEntry = latencyTable.getEntry("totalTime");
+            postProcessTimeEntry = latencyTable.getEntry("postProcessTime");
+        } else {
+            totalTimeEntry = SmartDashboard.getEntry("Vision/Latency/totalTime");
+            postProcessTimeEntry = SmartDashboard.getEntry("Vision/Latency/postProcessTime");
+        }
+        genCountEntry = SmartDashboard.getEntry(statisticsTableName + "/genCount");
+        frameCacheHitsEntry = SmartDashboard.getEntry(statisticsTableName + "/FrameCache/hits");
+        frameCacheMissesEntry = SmartDashboard.getEntry(statisticsTableName + "/FrameCache/misses");
+        matPoolTable = NetworkTableInstance.getDefault().getTable(statisticsTableName + "/MatPool");
+    }
+
+    /**
+     * Returns the GRIP pipeline.
+     * 
+     * @return The GRIP pipeline.
+     */
+    protected Pipeline getPipeline() {
+        return this.pipeline;
+    }
+
+    /**
+     * Returns the path of the network table in which the runner publishes its
+     * results.
+     * 
+     * @return The table path.
+     */
+    protected String getTableName() {
+        return this.tableName;
+    }
+
+    /**
+     * Returns the path of the network table in which a group of the runner's
+     * settings or statistics is kept. A runner given its own table keeps them
+     * there, so that runners on different cameras do not share them. Otherwise
+     * they stay in the table they have always been kept in, so that existing
+     * robot and dashboard code keeps working.
+     * 
+     * @param legacyTableName The path of the table used when the runner was not
+     *                        given its own table.
+     * @return The table path.
+     */
+    protected String getSettingsTableName(String legacyTableName) {
+        return this.namespaced ? this.tableName : legacyTableName;
+    }
+
+    /**
+     * Returns the resources shared by the GRIP pipeline with other pipelines.
+     * 
+     * @return The pipeline context.
+     */
+    PipelineContext getContext() {
+        return this.context;
+    }
+
+    /**
+     * Returns the latency histograms of the pipeline steps and runner phases.
+     * 
+     * @return The latency profile.
+     */
+    protected LatencyProfile getProfile() {
+        return this.profile;
     }
 
     /**
@@ -79,34 +259,434 @@ public abstract class TargetTrackingRunner<Pipeline extends VisionPipeline> {
     }
 
     /**
-     * Runs one iteration of the GRIP pipeline.
+     * Sets the recorder to which raw camera frames are copied before they are
+     * processed.
+     * 
+     * @param frameRecorder The frame recorder, or null to stop recording.
+     */
+    public void setFrameRecorder(FrameRecorder frameRecorder) {
+        this.frameRecorder = frameRecorder;
+    }
+
+    /**
+     * Sets the server that streams the annotated output video, so that its JPEG
+     * quality can be lowered when the vision loop falls behind.
+     * 
+     * @param streamServer The MJPEG server of the output video.
+     */
+    public void setStreamServer(VideoSink streamServer) {
+        this.streamServer = streamServer;
+    }
+
+    /**
+     * Sets the governor that is told the latency of each frame and that lowers
+     * the stream rate and resolution when the CPU is hot or loaded.
+     * 
+     * @param governor The frame rate governor, or null for none.
+     */
+    public void setGovernor(FrameRateGovernor governor) {
+        this.governor = governor;
+        if (this.streamController != null) {
+            this.streamController.setGovernor(governor);
+        }
+    }
+
+    /**
+     * Sets the clock that converts capture times to the network tables server
+     * time base.
+     * 
+     * @param serverClock The server clock.
+     */
+    public void setServerClock(ServerClock serverClock) {
+        this.serverClock = serverClock;
+    }
+
+    /**
+     * Sets the capture time and server timestamp of a frame from the time at
+     * which the camera captured it.
+     * 
+     * @param frame    The frame.
+     * @param grabTime The capture time returned by {@code CvSink.grabFrame}, in
+     *                 microseconds.
+     */
+    void stampFrame(Frame frame, long grabTime) {
+        serverClock.stamp(frame, grabTime);
+    }
+
+    /**
+     * Copies a raw camera frame to the frame recorder, if there is one. Used when
+     * the capture stage runs on its own thread.
+     * 
+     * @param frame The captured frame.
+     */
+    void recordFrame(Frame frame) {
+        if (frameRecorder != null) {
+            frameRecorder.record(frame.image, frame.sequence, frame.captureTime / 1000);
+        }
+    }
+
+    /**
+     * Grabs a frame from the camera and runs one iteration of the GRIP pipeline
+     * and post processing on it. Latency is measured from the time the camera
+     * captured the frame.
      */
     public void runOnce() {
-        // One iteration of the GRIP pipeline
-        this.runner.runOnce();
+        Frame frame = this.serialFrame;
+        long grabTime = this.cvSink.grabFrame(frame.image);
+        if (grabTime == 0) {
+            this.processedVideo.notifyError(this.cvSink.getError());
+            return;
+        }
+        frame.sequence = sequence++;
+        stampFrame(frame, grabTime);
+        recordFrame(frame);
+        context.getFrameCache().begin(frame.image);
+
+        runPipeline(frame);
+        frame.streamDue = isStreamDue();
+        frame.overlay.clear();
+        postProcess(frame);
+        context.getFrameCache().end();
         // Put the processed image to the output video stream
-        if (image != null) {
-            Imgproc.resize(this.image, this.processedImage, this.processedImage.size());
-            this.processedVideo.putFrame(this.processedImage);
+        if (frame.streamDue) {
+            streamFrame(frame.image, frame.overlay);
         }
-        // Report latency statistics to smart dashboard
-        long pipelineEndTime = System.nanoTime();
-        SmartDashboard.putNumber("Vision/Latency/totalTime",
-                Convert.nanosToMillis(pipelineEndTime - this.pipelineStartTime));
-        SmartDashboard.putNumber("Vision/Latency/postProcessTime",
-                Convert.nanosToMillis(pipelineEndTime - this.postProcessStartTime));
-        SmartDashboard.putNumber("Vision/genCount", genCount++);
+        reportLatency(frame.captureTime, frame.postProcessTime);
+    }
+
+    /**
+     * Runs the GRIP pipeline and post processing on a frame. Used when the
+     * capture, processing and output stages run on separate threads.
+     * 
+     * @param frame The frame to process.
+     */
+    void processFrame(Frame frame) {
+        runPipeline(frame);
+        postProcess(frame);
+    }
+
+    /**
+     * Runs the GRIP pipeline on a frame without modifying the frame, so that
+     * several pipelines can run on the same frame at the same time.
+     * 
+     * @param frame The frame to process.
+     */
+    void runPipeline(Frame frame) {
+        runPipeline(frame.image);
+    }
+
+    /**
+     * Runs the GRIP pipeline on an image and collects the targets it finds. While
+     * a target is locked and region tracking is enabled, only a window of the
+     * image around the target is processed. Otherwise, if pyramid detection is
+     * enabled, candidates are found in a downscaled image and only patches around
+     * them are processed at full resolution.
+     * 
+     * @param image The image to process.
+     */
+    private void runPipeline(Mat image) {
+        long startTime = System.nanoTime();
+        regionTracking = SmartDashboard.getBoolean(regionTrackingKey, false);
+        Rect window = null;
+        if (regionTracking) {
+            regionTracker.setMaxMissedFrames((int) SmartDashboard.getNumber(maxMissedFramesKey, 5));
+            window = regionTracker.getWindow(image.cols(), image.rows());
+        } else {
+            regionTracker.reset();
+        }
+
+        if (window != null) {
+            runPipeline(image, window);
+        } else if (!runPyramid(image)) {
+            region.setFullFrame();
+            this.pipeline.process(image);
+            collect();
+        }
+        profile.record(pipelineStage, startTime);
     }
 
     /**
-     * This method is called by the VisionRunner<Wrapper> object when the GRIP
-     * pipeline has produced outputs.
+     * Runs the GRIP pipeline on a window of an image and collects the targets it
+     * finds.
      * 
-     * @param wrapper Unused.
+     * @param image  The image to process.
+     * @param window The window of the image to process.
      */
-    private void unwrap(Wrapper wrapper) {
-        postProcessStartTime = System.nanoTime();
-        this.process(this.pipeline, this.image);
+    private void runPipeline(Mat image, Rect window) {
+        Mat windowImage = image.submat(window);
+        region.set(window.x, window.y, 1.0);
+        this.pipeline.process(windowImage);
+        windowImage.release();
+        collect();
+    }
+
+    /**
+     * Collects the targets found by the last run of the GRIP pipeline.
+     */
+    private void collect() {
+        long startTime = System.nanoTime();
+        collect(this.pipeline, this.region);
+        profile.record(collectStage, startTime);
+    }
+
+    /**
+     * Finds candidate targets in a downscaled image and runs the GRIP pipeline at
+     * full resolution on a patch around each candidate.
+     * 
+     * @param image The image to process.
+     * @return False if pyramid detection is disabled or not supported.
+     */
+    private boolean runPyramid(Mat image) {
+        int levels = Math.max(0, Math.min(2, (int) SmartDashboard.getNumber(pyramidLevelsKey, 0)));
+        if (levels != coarseLevels) {
+            coarsePipeline = levels > 0 ? createCoarsePipeline(levels) : null;
+            if (coarsePipeline != null) {
+                coarsePipeline.setContext(this.context);
+            }
+            coarseLevels = levels;
+        }
+        if (coarsePipeline == null) {
+            return false;
+        }
+
+        FrameCache.Transform transform = levels == 1 ? FrameCache.Transform.HALF : FrameCache.Transform.QUARTER;
+        Mat coarse = this.context.getFrameCache().get(image, transform, coarseImage);
+        updateCoarsePipeline(coarsePipeline, levels);
+        coarsePipeline.process(coarse);
+        coarseRegion.set(0, 0, (double) image.cols() / coarse.cols());
+        candidates.clear();
+        findCandidates(coarsePipeline, coarseRegion, candidates);
+        mergeCandidates(image.cols(), image.rows());
+
+        for (Rect candidate : candidates) {
+            runPipeline(image, candidate);
+        }
+        return true;
+    }
+
+    /**
+     * Clips the candidate patches to the image and merges overlapping patches so
+     * that no part of the image is processed twice.
+     */
+    private void mergeCandidates(int width, int height) {
+        for (int i = candidates.size() - 1; i >= 0; i--) {
+            Rect candidate = candidates.get(i);
+            int right = Math.min(width, candidate.x + candidate.width);
+            int bottom = Math.min(height, candidate.y + candidate.height);
+            candidate.x = Math.max(0, candidate.x);
+            candidate.y = Math.max(0, candidate.y);
+            candidate.width = right - candidate.x;
+            candidate.height = bottom - candidate.y;
+            if (candidate.width <= 0 || candidate.height <= 0) {
+                candidates.remove(i);
+            }
+        }
+
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int i = 0; i < candidates.size() && !merged; i++) {
+                Rect a = candidates.get(i);
+                for (int j = i + 1; j < candidates.size() && !merged; j++) {
+                    Rect b = candidates.get(j);
+                    if (a.x < b.x + b.width && b.x < a.x + a.width && a.y < b.y + b.height && b.y < a.y + a.height) {
+                        int right = Math.max(a.x + a.width, b.x + b.width);
+                        int bottom = Math.max(a.y + a.height, b.y + b.height);
+                        a.x = Math.min(a.x, b.x);
+                        a.y = Math.min(a.y, b.y);
+                        a.width = right - a.x;
+                        a.height = bottom - a.y;
+                        candidates.remove(j);
+                        merged = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Processes the GRIP pipeline outputs for a frame, adding annotations to the
+     * frame's overlay.
+     * 
+     * @param frame The frame to process.
+     */
+    void postProcess(Frame frame) {
+        frame.postProcessTime = System.nanoTime();
+        streamDue = frame.streamDue;
+        overlay = frame.overlay;
+        frameSequence = frame.sequence;
+        frameTimestamp = frame.timestamp;
+        postProcess(frame.image);
+    }
+
+    /**
+     * Processes the GRIP pipeline outputs for an image and updates the tracked
+     * region.
+     * 
+     * @param image The processed image.
+     */
+    private void postProcess(Mat image) {
+        targetTracked = false;
+        compatibilityViewDue = isDue(lastCompatibilityViewTime);
+        if (compatibilityViewDue) {
+            lastCompatibilityViewTime = System.nanoTime();
+        }
+        long startTime = System.nanoTime();
+        this.process(image);
+        profile.record(postProcessStage, startTime);
+        if (regionTracking && !targetTracked) {
+            regionTracker.missed();
+        }
+    }
+
+    /**
+     * Called by a subclass from {@link #process} to publish the results for the
+     * current image in a single network table update. The results are stamped
+     * with the time the image was captured, and published with the distance and
+     * angle extrapolated to the time of publishing.
+     * 
+     * @param hasTarget Whether a target was found.
+     * @param distance  The distance to the target, in inches.
+     * @param angle     The angle to the target, in degrees.
+     * @param skew      The skew of the target.
+     */
+    protected void publishResult(boolean hasTarget, double distance, double angle, double skew) {
+        if (hasTarget) {
+            predictor.update(frameTimestamp, distance, angle);
+        } else {
+            predictor.reset();
+        }
+        long now = serverClock.now();
+        resultPublisher.publish(hasTarget, distance, angle, skew, frameSequence, frameTimestamp,
+                predictor.predictDistance(now), predictor.predictAngle(now), now);
+    }
+
+    /**
+     * Returns whether a subclass should also update its individual smart
+     * dashboard entries for the current image. These are kept for compatibility
+     * and are updated at a lower rate than the published results.
+     * 
+     * @return True if the individual entries should be updated.
+     */
+    protected boolean isCompatibilityViewDue() {
+        return compatibilityViewDue;
+    }
+
+    /**
+     * Returns whether a subclass should annotate the current image. Images are
+     * annotated only when they are going to be put to the output video stream.
+     * 
+     * @return True if the image should be annotated.
+     */
+    protected boolean isAnnotationDue() {
+        return streamDue;
+    }
+
+    /**
+     * Returns the display list to which a subclass adds the annotations for the
+     * current image, in image coordinates. The annotations are drawn onto the
+     * output video after it is downscaled, leaving the image itself unmodified.
+     * 
+     * @return The overlay for the current image.
+     */
+    protected Overlay getOverlay() {
+        return overlay;
+    }
+
+    /**
+     * Returns whether the current frame should be annotated and put to the
+     * output video stream, which is only while a client is watching the stream
+     * and at the stream frame rate.
+     * 
+     * @return True if the frame should be streamed.
+     */
+    boolean isStreamDue() {
+        return this.processedVideo != null && streamController.isDue(this.processedVideo.isEnabled());
+    }
+
+    /**
+     * Returns whether the compatibility view is enabled and its period has
+     * passed since the specified time.
+     */
+    private boolean isDue(long lastTime) {
+        if (!SmartDashboard.getBoolean(COMPATIBILITY_VIEW_KEY, true)) {
+            return false;
+        }
+        double period = SmartDashboard.getNumber(COMPATIBILITY_PERIOD_KEY, 0.2);
+        return System.nanoTime() - lastTime >= (long) (period * 1e9);
+    }
+
+    /**
+     * Called by a subclass from {@link #process} to report the bounds of the
+     * target to follow in the next frame.
+     * 
+     * @param x      The x-coordinate of the target's bounds in the frame.
+     * @param y      The y-coordinate of the target's bounds in the frame.
+     * @param width  The width of the target's bounds.
+     * @param height The height of the target's bounds.
+     */
+    protected void trackTarget(double x, double y, double width, double height) {
+        targetTracked = true;
+        if (regionTracking) {
+            regionTracker.found(x, y, width, height);
+        }
+    }
+
+    /**
+     * Downscales an image to the resolution set by the stream controller, draws
+     * its annotations on the result and puts it to the output video stream.
+     * 
+     * @param image   The image.
+     * @param overlay The annotations of the image.
+     */
+    void streamFrame(Mat image, Overlay overlay) {
+        long startTime = System.nanoTime();
+        VideoMode videoMode = this.processedVideo.getVideoMode();
+        streamSize.width = Math.round(videoMode.width * streamController.getScale());
+        streamSize.height = Math.round(videoMode.height * streamController.getScale());
+        Imgproc.resize(image, this.processedImage, streamSize);
+        profile.record(resizeStage, startTime);
+        startTime = System.nanoTime();
+        overlay.draw(this.processedImage, streamSize.width / image.cols(), streamSize.height / image.rows());
+        profile.record(annotateStage, startTime);
+        startTime = System.nanoTime();
+        this.processedVideo.putFrame(this.processedImage);
+        profile.record(putFrameStage, startTime);
+    }
+
+    /**
+     * Reports latency statistics to smart dashboard, at the rate of the
+     * compatibility view.
+     * 
+     * @param startTime            The time at which the frame was captured.
+     * @param postProcessStartTime The time at which post processing started.
+     */
+    void reportLatency(long startTime, long postProcessStartTime) {
+        long pipelineEndTime = System.nanoTime();
+        genCount++;
+        profile.record(totalStage, startTime);
+        if (governor != null) {
+            governor.recordLatency(pipelineEndTime - startTime);
+        }
+        if (streamController != null && streamController.adjust(profile.getHistogram(totalStage))
+                && streamServer != null) {
+            streamServer.getProperty("compression").set(streamController.getQuality());
+        }
+        if (pipelineEndTime - lastProfilePublishTime >= PROFILE_PUBLISH_PERIOD) {
+            lastProfilePublishTime = pipelineEndTime;
+            profile.publish(latencyTable);
+        }
+        if (!isDue(lastLatencyReportTime)) {
+            return;
+        }
+        lastLatencyReportTime = pipelineEndTime;
+        totalTimeEntry.setDouble(Convert.nanosToMillis(pipelineEndTime - startTime));
+        postProcessTimeEntry.setDouble(Convert.nanosToMillis(pipelineEndTime - postProcessStartTime));
+        genCountEntry.setDouble(genCount);
+        FrameCache frameCache = this.context.getFrameCache();
+        frameCacheHitsEntry.setDouble(frameCache.getHits());
+        frameCacheMissesEntry.setDouble(frameCache.getMisses());
+        frameCache.getMatPool().publish(matPoolTable);
     }
 
     /**
@@ -122,13 +702,59 @@ public abstract class TargetTrackingRunner<Pipeline extends VisionPipeline> {
     }
 
     /**
-     * This method is implemented by a subclass to process the GRIP pipeline outputs
-     * for the current image.
+     * This method is implemented by a subclass to collect the targets found by
+     * the GRIP pipeline. It is called once for each run of the pipeline on the
+     * current image, which may be more than once per image when pyramid detection
+     * is enabled.
      * 
      * @param pipeline The GRIP pipeline.
-     * @param image    The processed image.
+     * @param region   Maps the pipeline output coordinates to the image.
+     */
+    protected abstract void collect(Pipeline pipeline, ImageRegion region);
+
+    /**
+     * This method is implemented by a subclass to process the targets collected
+     * for the current image, add annotations to the overlay and publish the
+     * results. The image itself must not be modified.
+     * 
+     * @param image The processed image.
+     */
+    protected abstract void process(Mat image);
+
+    /**
+     * Creates a pipeline for finding candidate targets in a downscaled image.
+     * Subclasses that support pyramid detection override this together with
+     * {@link #findCandidates}.
+     * 
+     * @param levels The number of times the image is halved in each dimension.
+     * @return The pipeline, or null if pyramid detection is not supported.
+     */
+    protected Pipeline createCoarsePipeline(int levels) {
+        return null;
+    }
+
+    /**
+     * Updates the coarse pipeline from the current settings of the full
+     * resolution pipeline before each run, so that changes made to the settings
+     * at runtime reach it. Subclasses whose coarse pipeline scales limits
+     * override this.
+     * 
+     * @param pipeline The coarse pipeline.
+     * @param levels   The number of times the image is halved in each dimension.
      */
-    protected abstract void process(Pipeline pipeline, Mat image);
+    protected void updateCoarsePipeline(Pipeline pipeline, int levels) {
+    }
+
+    /**
+     * Adds a patch of the full resolution image around each candidate target
+     * found by the coarse pipeline.
+     * 
+     * @param pipeline   The coarse pipeline.
+     * @param region     Maps the coarse pipeline output coordinates to the image.
+     * @param candidates The list to which the patches are added.
+     */
+    protected void findCandidates(Pipeline pipeline, ImageRegion region, List<Rect> candidates) {
+    }
 
     /**
      * Starts the GRIP pipeline.
@@ -0,0 +1,61 @@
+package runner;
+
+import java.io.IOException;
+
+import org.opencv.core.Mat;
+import org.opencv.videoio.VideoCapture;
+import org.opencv.videoio.Videoio;
+
+/**
+ * Reads the frames of a video file.
+ */
+public class VideoFileSource implements FrameSource {
+    private final String path;
+    private final VideoCapture capture;
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param path The path of the video file.
+     * @throws IOException If the file cannot be opened.
+     */
+    public VideoFileSource(String path) throws IOException {
+        this.path = path;
+        this.capture = new VideoCapture(path);
+        if (!this.capture.isOpened()) {
+            throw new IOException("could not open '" + path + "'");
+        }
+    }
+
+    @Override
+    public int getFrameCount() {
+        int count = (int) capture.get(Videoio.CAP_PROP_FRAME_COUNT);
+        return count > 0 ? count : -1;
+    }
+
+    /**
+     * Seeks to a frame. If the video cannot seek, frames are decoded and
+     * discarded up to the frame.
+     */
+    @Override
+    public void seek(int index) throws IOException {
+        if (index == 0 || capture.set(Videoio.CAP_PROP_POS_FRAMES, index)) {
+            return;
+        }
+        for (int skipped = 0; skipped < index; skipped++) {
+            if (!capture.grab()) {
+                throw new IOException("could not seek to frame " + index + " of '" + path + "'");
+            }
+        }
+    }
+
+    @Override
+    public boolean read(Mat image) {
+        return capture.read(image);
+    }
+
+    @Override
+    public void close() {
+        capture.release();
+    }
+}
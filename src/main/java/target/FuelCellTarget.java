@@ -7,13 +7,24 @@ import org.opencv.core.Point;
 
 /**
  * A class representing a fuel cell target.
+ *
+ * <p>
+ * An instance can be reused from frame to frame by calling
+ * {@link #set(double, double, double)}.
  */
 public class FuelCellTarget {
     private static final double TARGET_WIDTH_INCHES = 7.1;
 
-    private Point center;
+    private final Point center = new Point();
     private double diameterInPixels;
 
+    /**
+     * Constructs an empty instance of this class to be filled in by
+     * {@link #set(double, double, double)}.
+     */
+    public FuelCellTarget() {
+    }
+
     /**
      * Constructs an instance of this class.
      * 
@@ -21,8 +32,22 @@ public class FuelCellTarget {
      * @param diameterInPixels The diameter of the target, in pixels.
      */
     public FuelCellTarget(Point center, double diameterInPixels) {
-        this.center = center;
+        set(center.x, center.y, diameterInPixels);
+    }
+
+    /**
+     * Sets the position and size of the target.
+     * 
+     * @param centerX          The x-coordinate of the center of the target.
+     * @param centerY          The y-coordinate of the center of the target.
+     * @param diameterInPixels The diameter of the target, in pixels.
+     * @return This target.
+     */
+    public FuelCellTarget set(double centerX, double centerY, double diameterInPixels) {
+        this.center.x = centerX;
+        this.center.y = centerY;
         this.diameterInPixels = diameterInPixels;
+        return this;
     }
 
     /**
@@ -10,6 +10,11 @@ import org.opencv.core.Point;
 
 /**
  * A class representing a loading station target.
+ *
+ * <p>
+ * An instance can be reused from frame to frame by calling
+ * {@link #set(int[], int, double, double)}, which computes the target geometry
+ * from a primitive vertex buffer without allocating.
  */
 public class LoadingStationTarget {
     private static final double TARGET_HEIGHT_INCHES = 11.0;
@@ -18,61 +23,135 @@ public class LoadingStationTarget {
     public double height;
     public double centerX;
     public double centerY;
-    public Point upperLeft;
-    public Point upperRight;
-    public Point bottomLeft;
-    public Point bottomRight;
+    public final Point upperLeft = new Point();
+    public final Point upperRight = new Point();
+    public final Point bottomLeft = new Point();
+    public final Point bottomRight = new Point();
     public double distance;
     public double skew;
     public double skewDegrees;
     public double angleX;
 
+    /** The bounding box of the outline. */
+    public double boundsX;
+    public double boundsY;
+    public double boundsWidth;
+    public double boundsHeight;
+
+    /** The area enclosed by the outline, in square pixels. */
+    public double area;
+
+    /**
+     * Constructs an empty instance of this class to be filled in by
+     * {@link #set(int[], int, double, double)}.
+     */
+    public LoadingStationTarget() {
+    }
+
     /**
      * Constructs an instance of this class.
-     * 
+     *
      * @param mat A collection of points defining the outline of the target.
      */
     public LoadingStationTarget(MatOfPoint mat) {
-        upperLeft = new Point(0, 0);
-        upperRight = new Point(0, 0);
-        bottomLeft = new Point(0, 0);
-        bottomRight = new Point(0, 0);
-        double upperLeftMax = -Integer.MAX_VALUE;
-        double upperRightMax = -Integer.MAX_VALUE;
-        double bottomLeftMax = -Integer.MAX_VALUE;
-        double bottomRightMax = -Integer.MAX_VALUE;
-
-        for (Point point : mat.toList()) {
-            if (-point.x - point.y > upperLeftMax) {
-                upperLeftMax = -point.x - point.y;
-                upperLeft.x = point.x;
-                upperLeft.y = point.y;
-            }
+        this(mat, 0, 0);
+    }
 
-            if (point.x - point.y > upperRightMax) {
-                upperRightMax = point.x - point.y;
-                upperRight.x = point.x;
-                upperRight.y = point.y;
-            }
+    /**
+     * Constructs an instance of this class from an outline found in a window of
+     * the source image.
+     *
+     * @param mat     A collection of points defining the outline of the target,
+     *                relative to the window.
+     * @param offsetX The x-coordinate of the window in the source image.
+     * @param offsetY The y-coordinate of the window in the source image.
+     */
+    public LoadingStationTarget(MatOfPoint mat, double offsetX, double offsetY) {
+        int count = (int) mat.total();
+        int[] points = new int[2 * count];
+        mat.get(0, 0, points);
+        set(points, count, offsetX, offsetY);
+    }
 
-            if (-point.x + point.y > bottomLeftMax) {
-                bottomLeftMax = -point.x + point.y;
-                bottomLeft.x = point.x;
-                bottomLeft.y = point.y;
-            }
+    /**
+     * Computes the target from the vertices of its outline in a single pass.
+     *
+     * @param points  The vertices as interleaved x and y coordinates, as read
+     *                from a MatOfPoint with {@code get(0, 0, points)}.
+     * @param count   The number of vertices.
+     * @param offsetX The x-coordinate in the source image of the window in which
+     *                the outline was found.
+     * @param offsetY The y-coordinate in the source image of the window in which
+     *                the outline was found.
+     * @return This target.
+     */
+    public LoadingStationTarget set(int[] points, int count, double offsetX, double offsetY) {
+        int upperLeftMax = Integer.MIN_VALUE;
+        int upperRightMax = Integer.MIN_VALUE;
+        int bottomLeftMax = Integer.MIN_VALUE;
+        int bottomRightMax = Integer.MIN_VALUE;
+        int upperLeftIndex = 0;
+        int upperRightIndex = 0;
+        int bottomLeftIndex = 0;
+        int bottomRightIndex = 0;
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        long twiceArea = 0;
 
-            if (point.x + point.y > bottomRightMax) {
-                bottomRightMax = point.x + point.y;
-                bottomRight.x = point.x;
-                bottomRight.y = point.y;
+        for (int i = 0; i < 2 * count; i += 2) {
+            int x = points[i];
+            int y = points[i + 1];
+
+            if (-x - y > upperLeftMax) {
+                upperLeftMax = -x - y;
+                upperLeftIndex = i;
+            }
+            if (x - y > upperRightMax) {
+                upperRightMax = x - y;
+                upperRightIndex = i;
+            }
+            if (-x + y > bottomLeftMax) {
+                bottomLeftMax = -x + y;
+                bottomLeftIndex = i;
+            }
+            if (x + y > bottomRightMax) {
+                bottomRightMax = x + y;
+                bottomRightIndex = i;
             }
+
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+
+            // Shoelace formula, closing the outline back to the first vertex
+            int next = i + 2 < 2 * count ? i + 2 : 0;
+            twiceArea += (long) x * points[next + 1] - (long) points[next] * y;
         }
-        double heightLeft = Math.sqrt(Math.pow(bottomLeft.y - upperLeft.y, 2.0) + Math.pow(bottomLeft.x - upperLeft.x, 2.0));
-        double heightRight = Math.sqrt(Math.pow(bottomRight.y - upperRight.y, 2.0) + Math.pow(bottomRight.x - upperRight.x, 2.0));
+
+        upperLeft.x = points[upperLeftIndex] + offsetX;
+        upperLeft.y = points[upperLeftIndex + 1] + offsetY;
+        upperRight.x = points[upperRightIndex] + offsetX;
+        upperRight.y = points[upperRightIndex + 1] + offsetY;
+        bottomLeft.x = points[bottomLeftIndex] + offsetX;
+        bottomLeft.y = points[bottomLeftIndex + 1] + offsetY;
+        bottomRight.x = points[bottomRightIndex] + offsetX;
+        bottomRight.y = points[bottomRightIndex + 1] + offsetY;
+
+        boundsX = minX + offsetX;
+        boundsY = minY + offsetY;
+        boundsWidth = maxX - minX + 1;
+        boundsHeight = maxY - minY + 1;
+        area = Math.abs(twiceArea) / 2.0;
+
+        double heightLeft = length(bottomLeft, upperLeft);
+        double heightRight = length(bottomRight, upperRight);
         height = (heightLeft + heightRight) / 2.0;
 
-        double widthBottom = Math.sqrt(Math.pow(bottomRight.x - bottomLeft.x, 2.0) + Math.pow(bottomRight.y - bottomLeft.y, 2.0));
-        double widthTop = Math.sqrt(Math.pow(upperRight.x - upperLeft.x, 2.0) + Math.pow(upperRight.y - upperLeft.y, 2.0));
+        double widthBottom = length(bottomRight, bottomLeft);
+        double widthTop = length(upperRight, upperLeft);
         double width = (widthBottom + widthTop) / 2.0;
 
         centerX = (bottomRight.x + bottomLeft.x + upperRight.x + upperLeft.x) / 4.0;
@@ -83,12 +162,22 @@ public class LoadingStationTarget {
         // Skew is from -1.0 to 1.0, with negative values representing the robot being to the left of the target, and positive to the right
         skew = Math.abs(1 - (11.0 / 7.0) * (width / height)) * leftOrRight;
         skewDegrees = Math.acos(Math.min(1.0, (11.0 / 7.0) * (width / height))) * (180 / Math.PI) * leftOrRight;
-        
+
         angleX = -Math.toDegrees(Math.atan2(centerX - IMAGE_CENTER_X, IMAGE_CENTER_X / Math.tan(HALF_IMAGE_FOV_X)));
-        
+
         double x = IMAGE_CENTER_Y / Math.tan(HALF_IMAGE_FOV_Y);
         double y = IMAGE_CENTER_Y - centerY;
         double distanceToTargetInPixels = Math.sqrt(x * x + y * y);
         distance = distanceToTargetInPixels * (TARGET_HEIGHT_INCHES / height);
+        return this;
+    }
+
+    /**
+     * Returns the distance between two points.
+     */
+    private static double length(Point a, Point b) {
+        double dx = a.x - b.x;
+        double dy = a.y - b.y;
+        return Math.sqrt(dx * dx + dy * dy);
     }
 }
@@ -0,0 +1,147 @@
+package utilities;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-bucket histogram of latencies over a rolling window of time.
+ *
+ * <p>
+ * Latencies are recorded in microseconds into buckets that split each power of
+ * two into eight, so every bucket is within 12.5% of the latencies it holds.
+ * Recording does not allocate. The window is divided into a fixed number of
+ * slices. Whenever the histogram is written or read, the slices that have
+ * expired since the current slice started are cleared and reused, so
+ * percentiles cover between {@code slices - 1} and {@code slices} slice periods
+ * even after a gap in recording, and drop to 0 once nothing has been recorded
+ * for a whole window.
+ *
+ * <p>
+ * A histogram may be written and read by several threads.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /** Latencies of 2^31 microseconds and above all land in the last bucket. */
+    private static final int BUCKETS = (32 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final int[][] counts;
+    private final int[] maxima;
+    private final long slicePeriod;
+    private int slice = 0;
+    private long sliceStart;
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param slices            The number of slices in the rolling window.
+     * @param sliceMilliseconds The length of each slice, in milliseconds.
+     */
+    public LatencyHistogram(int slices, long sliceMilliseconds) {
+        this.counts = new int[slices][BUCKETS];
+        this.maxima = new int[slices];
+        this.slicePeriod = sliceMilliseconds * 1000000L;
+        this.sliceStart = System.nanoTime();
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos The latency, in nanoseconds.
+     */
+    public synchronized void record(long nanos) {
+        expire();
+        int micros = (int) Math.min(Integer.MAX_VALUE, Math.max(0, nanos / 1000));
+        counts[slice][bucketOf(micros)]++;
+        if (micros > maxima[slice]) {
+            maxima[slice] = micros;
+        }
+    }
+
+    /**
+     * Returns a percentile of the latencies in the window.
+     *
+     * @param percentile The percentile, from 0 to 100.
+     * @return The upper bound of the bucket holding the percentile, in
+     *         milliseconds, or 0 if nothing has been recorded.
+     */
+    public synchronized double getPercentile(double percentile) {
+        expire();
+        long total = 0;
+        for (int[] sliceCounts : counts) {
+            for (int count : sliceCounts) {
+                total += count;
+            }
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            for (int[] sliceCounts : counts) {
+                seen += sliceCounts[bucket];
+            }
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(bucket), getMax() * 1000.0) / 1000.0;
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Returns the largest latency in the window.
+     *
+     * @return The largest latency, in milliseconds.
+     */
+    public synchronized double getMax() {
+        expire();
+        int max = 0;
+        for (int sliceMax : maxima) {
+            max = Math.max(max, sliceMax);
+        }
+        return max / 1000.0;
+    }
+
+    /**
+     * Clears the slices that have expired since the current slice started, and
+     * makes the slice holding the current time the current slice.
+     */
+    private void expire() {
+        long elapsed = (System.nanoTime() - sliceStart) / slicePeriod;
+        if (elapsed <= 0) {
+            return;
+        }
+        for (long i = 0; i < Math.min(elapsed, counts.length); i++) {
+            slice = (slice + 1) % counts.length;
+            Arrays.fill(counts[slice], 0);
+            maxima[slice] = 0;
+        }
+        sliceStart += elapsed * slicePeriod;
+    }
+
+    /**
+     * Returns the bucket holding a latency.
+     */
+    private static int bucketOf(int micros) {
+        if (micros < SUB_BUCKETS) {
+            return micros;
+        }
+        int exponent = 31 - Integer.numberOfLeadingZeros(micros);
+        int mantissa = (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + mantissa;
+    }
+
+    /**
+     * Returns the largest latency held by a bucket, in microseconds.
+     */
+    private static double upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int mantissa = bucket % SUB_BUCKETS;
+        return ((double) (SUB_BUCKETS + mantissa + 1) * (1L << (exponent - SUB_BUCKET_BITS))) - 1;
+    }
+}
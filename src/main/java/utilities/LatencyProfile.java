@@ -0,0 +1,90 @@
+package utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+
+/**
+ * A set of named stages, each with a rolling latency histogram.
+ *
+ * <p>
+ * Stages are registered once, when the code being timed is set up, and are then
+ * timed by number so that recording a stage does not allocate:
+ *
+ * <pre>
+ * int stage = profile.stage("hsvThreshold");
+ * ...
+ * long start = System.nanoTime();
+ * hsvThreshold(...);
+ * profile.record(stage, start);
+ * </pre>
+ */
+public class LatencyProfile {
+    private static final int WINDOW_SLICES = 5;
+    private static final long SLICE_MILLISECONDS = 1000;
+
+    private final List<String> names = new ArrayList<>();
+    private final List<LatencyHistogram> histograms = new CopyOnWriteArrayList<>();
+    private final List<NetworkTableEntry> entries = new ArrayList<>();
+    private final double[] values = new double[4];
+
+    /**
+     * Returns the number of a stage, registering it if it is new.
+     *
+     * @param name The name of the stage.
+     * @return The number of the stage.
+     */
+    public synchronized int stage(String name) {
+        int stage = names.indexOf(name);
+        if (stage < 0) {
+            stage = names.size();
+            names.add(name);
+            histograms.add(new LatencyHistogram(WINDOW_SLICES, SLICE_MILLISECONDS));
+        }
+        return stage;
+    }
+
+    /**
+     * Records the latency of a stage that started at the specified time and has
+     * just ended.
+     *
+     * @param stage     The number of the stage.
+     * @param startTime The time at which the stage started, from System.nanoTime().
+     */
+    public void record(int stage, long startTime) {
+        histograms.get(stage).record(System.nanoTime() - startTime);
+    }
+
+    /**
+     * Returns the histogram of a stage.
+     *
+     * @param stage The number of the stage.
+     * @return The latency histogram.
+     */
+    public LatencyHistogram getHistogram(int stage) {
+        return histograms.get(stage);
+    }
+
+    /**
+     * Publishes the p50, p95, p99 and maximum latency of each stage, in
+     * milliseconds, as a double array named after the stage.
+     *
+     * @param table The table in which to publish the latencies.
+     */
+    public synchronized void publish(NetworkTable table) {
+        for (int stage = 0; stage < names.size(); stage++) {
+            if (entries.size() <= stage) {
+                entries.add(table.getEntry(names.get(stage)));
+            }
+            LatencyHistogram histogram = histograms.get(stage);
+            values[0] = histogram.getPercentile(50);
+            values[1] = histogram.getPercentile(95);
+            values[2] = histogram.getPercentile(99);
+            values[3] = histogram.getMax();
+            entries.get(stage).setDoubleArray(values);
+        }
+    }
+}
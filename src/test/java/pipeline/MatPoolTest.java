@@ -0,0 +1,49 @@
+package pipeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+public class MatPoolTest {
+    @BeforeClass
+    public static void loadOpenCv() {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    }
+
+    @Test
+    public void strictEndFrameThrowsOnUnreleasedImage() {
+        MatPool pool = new MatPool(true);
+        pool.acquire(120, 160, CvType.CV_8UC1);
+        try {
+            pool.endFrame();
+            fail("endFrame did not throw with an image still checked out");
+        } catch (IllegalStateException e) {
+            assertEquals(1, pool.getLeaks());
+        }
+    }
+
+    @Test
+    public void releasedImageIsReusedInTheNextFrame() {
+        MatPool pool = new MatPool(true);
+        Mat mat = pool.acquire(120, 160, CvType.CV_8UC1);
+        pool.release(mat);
+        pool.endFrame();
+
+        assertSame(mat, pool.acquire(120, 160, CvType.CV_8UC1));
+        assertEquals(1, pool.getHits());
+        assertEquals(1, pool.getMisses());
+        assertEquals(0, pool.getLeaks());
+        assertEquals(120 * 160, pool.getLiveBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void releaseRejectsForeignImage() {
+        new MatPool(false).release(new Mat());
+    }
+}
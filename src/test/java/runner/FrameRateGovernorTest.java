@@ -0,0 +1,187 @@
+package runner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+
+public class FrameRateGovernorTest {
+    private static final long START = TimeUnit.SECONDS.toNanos(100);
+    private static final long HOLD = TimeUnit.SECONDS.toNanos(10);
+    private static final int CORES = Runtime.getRuntime().availableProcessors();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private NetworkTableInstance instance;
+    private NetworkTable table;
+    private Path thermalPath;
+    private Path loadPath;
+    private FrameRateGovernor governor;
+
+    @Before
+    public void setUp() throws IOException {
+        instance = NetworkTableInstance.create();
+        table = instance.getTable("governor");
+        thermalPath = folder.getRoot().toPath().resolve("temp");
+        loadPath = folder.getRoot().toPath().resolve("loadavg");
+        writeTemperature(50);
+        writeLoad(0.1);
+        governor = new FrameRateGovernor(thermalPath, loadPath, table);
+    }
+
+    @After
+    public void tearDown() {
+        instance.close();
+    }
+
+    @Test
+    public void staysAtFullRateWithinLimits() {
+        governor.update(START);
+
+        assertStep(0, 1.0);
+        assertEquals(50.0, table.getEntry("temperature").getDouble(0), 1e-9);
+    }
+
+    @Test
+    public void stepsDownWhenHot() throws IOException {
+        writeTemperature(80);
+        governor.update(START);
+
+        assertStep(1, 0.75);
+        assertEquals(20.0, table.getEntry("maxFps").getDouble(0), 1e-9);
+    }
+
+    @Test
+    public void stepsDownWhenLoaded() throws IOException {
+        writeLoad(2.0);
+        governor.update(START);
+
+        assertStep(1, 0.75);
+    }
+
+    @Test
+    public void stepsDownWhenLatencyIsOverBudget() {
+        for (int i = 0; i < 20; i++) {
+            governor.recordLatency(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        governor.update(START);
+
+        assertStep(1, 0.75);
+        assertTrue(table.getEntry("latencyP95").getDouble(0) > 50);
+    }
+
+    @Test
+    public void holdsEachStep() throws IOException {
+        writeTemperature(80);
+        governor.update(START);
+        governor.update(START + HOLD / 2);
+        assertStep(1, 0.75);
+
+        governor.update(START + HOLD);
+        assertStep(2, 0.5);
+
+        governor.update(START + 2 * HOLD);
+        governor.update(START + 3 * HOLD);
+        governor.update(START + 4 * HOLD);
+        assertStep(4, 0.25);
+    }
+
+    @Test
+    public void stepsUpOnlyWellWithinLimits() throws IOException {
+        writeTemperature(80);
+        governor.update(START);
+        governor.update(START + HOLD);
+        assertStep(2, 0.5);
+
+        // Below the target, but not by the hysteresis margin
+        writeTemperature(67);
+        governor.update(START + 2 * HOLD);
+        assertStep(2, 0.5);
+
+        writeTemperature(60);
+        governor.update(START + 2 * HOLD + 1);
+        assertStep(1, 0.75);
+        governor.update(START + 2 * HOLD + HOLD / 2);
+        assertStep(1, 0.75);
+        governor.update(START + 3 * HOLD + 1);
+        assertStep(0, 1.0);
+    }
+
+    @Test
+    public void governsStreamResolutionOnlyWhenEnabled() throws IOException {
+        writeTemperature(80);
+        governor.update(START);
+        governor.update(START + HOLD);
+        assertEquals(0, governor.getStreamStep());
+
+        table.getEntry("scaleStream").setBoolean(true);
+        governor.update(START + HOLD + 1);
+        assertEquals(1, governor.getStreamStep());
+        assertEquals(1.0, table.getEntry("streamStep").getDouble(0), 1e-9);
+
+        governor.update(START + 2 * HOLD);
+        assertEquals(2, governor.getStreamStep());
+    }
+
+    @Test
+    public void ignoresUnreadableFiles() throws IOException {
+        Files.delete(thermalPath);
+        Files.write(loadPath, "not a number".getBytes());
+        governor.update(START);
+
+        assertStep(0, 1.0);
+        assertTrue(Double.isNaN(table.getEntry("temperature").getDouble(0)));
+        assertTrue(Double.isNaN(table.getEntry("load").getDouble(0)));
+    }
+
+    @Test
+    public void stepsUpWhenFilesBecomeUnreadable() throws IOException {
+        writeTemperature(80);
+        governor.update(START);
+        assertStep(1, 0.75);
+
+        Files.delete(thermalPath);
+        governor.update(START + HOLD);
+        assertStep(0, 1.0);
+    }
+
+    @Test
+    public void publishesProcessMemory() {
+        assumeTrue(Files.exists(Paths.get("/proc/self/status")));
+        governor.update(START);
+
+        double residentBytes = table.getEntry("residentBytes").getDouble(0);
+        double nativeBytes = table.getEntry("nativeBytes").getDouble(0);
+        assertTrue(residentBytes > 0);
+        assertTrue(nativeBytes < residentBytes);
+    }
+
+    private void assertStep(int step, double streamRate) {
+        assertEquals(step, (int) table.getEntry("step").getDouble(-1));
+        assertEquals(streamRate, governor.getStreamRate(), 1e-9);
+        assertEquals(0, governor.getStreamStep());
+    }
+
+    private void writeTemperature(double celsius) throws IOException {
+        Files.write(thermalPath, (Math.round(celsius * 1000) + "\n").getBytes());
+    }
+
+    private void writeLoad(double loadPerCore) throws IOException {
+        Files.write(loadPath, (loadPerCore * CORES + " 0.50 0.40 1/123 4567\n").getBytes());
+    }
+}